@@ -0,0 +1,42 @@
+package com.yifen9.jiraiboxsweeper.benchmarks;
+
+import com.yifen9.jiraiboxsweeper.model.Config;
+import com.yifen9.jiraiboxsweeper.service.Firebase;
+import com.yifen9.jiraiboxsweeper.service.Firebase.Score;
+
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Shared setup for the suites
+final class Benchmarks {
+    private Benchmarks() {
+    }
+
+    static Config level(String name) {
+        for (Config p : Config.presets())
+            if (p.name.equals(name)) return p;
+        throw new IllegalArgumentException("No preset " + name);
+    }
+
+    // The same n scores on every run, times spread like a busy level
+    static List<Score> scores(int n) {
+        SplittableRandom rnd = new SplittableRandom(n);
+        List<Score> scores = new ArrayList<>(n);
+        for (int k = 0; k < n; k++) {
+            String key = String.format("-N%07d%011d", k, rnd.nextLong(100_000_000_000L));
+            scores.add(new Score(key, "player" + rnd.nextInt(10_000), 5_000 + rnd.nextInt(600_000), rnd.nextLong()));
+        }
+        return scores;
+    }
+
+    // A level node as the database sends it, written the way the app writes scores
+    static byte[] fixture(List<Score> scores) {
+        JSONObject level = new JSONObject();
+        for (Score s : scores) level.put(s.key, Firebase.toJson(s));
+        return level.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
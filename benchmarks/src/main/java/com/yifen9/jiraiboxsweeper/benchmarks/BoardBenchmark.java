@@ -0,0 +1,51 @@
+package com.yifen9.jiraiboxsweeper.benchmarks;
+
+import com.yifen9.jiraiboxsweeper.model.Board;
+import com.yifen9.jiraiboxsweeper.model.Config;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Making boards: the arrays, placing mines around a safe first click, the win check
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+    @Param({"Beginner", "Intermediate", "Expert"})
+    public String level;
+
+    private Config config;
+    private Board board;
+    private long seed;
+
+    @Setup
+    public void setup() {
+        config = Benchmarks.level(level);
+        board = new Board(config, 1);
+        board.reveal(config.rows / 2, config.cols / 2);
+    }
+
+    // Allocates every array, nothing placed yet
+    @Benchmark
+    public Board construct() {
+        return new Board(config, seed++);
+    }
+
+    // What a reset and first click cost on a reused board: mines go
+    // everywhere but the 3x3 block around the click, counts follow
+    @Benchmark
+    public Board firstClick() {
+        board.reset(seed++);
+        board.place(config.rows / 2, config.cols / 2);
+        return board;
+    }
+
+    @Benchmark
+    public boolean isCleared() {
+        return board.isCleared();
+    }
+}
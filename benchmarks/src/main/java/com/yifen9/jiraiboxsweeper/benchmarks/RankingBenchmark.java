@@ -0,0 +1,56 @@
+package com.yifen9.jiraiboxsweeper.benchmarks;
+
+import com.yifen9.jiraiboxsweeper.model.RankTree;
+import com.yifen9.jiraiboxsweeper.service.Firebase;
+import com.yifen9.jiraiboxsweeper.service.Firebase.Score;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Keeping a ranking: sorting a loaded page, filling the rank tree, and the
+// rank lookups the table makes for every row it shows
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RankingBenchmark {
+    @Param({"1000", "100000"})
+    public int count;
+
+    private List<Score> scores;
+    private final RankTree tree = new RankTree();
+    private int[] queries;
+    private int next;
+
+    @Setup
+    public void setup() {
+        scores = Benchmarks.scores(count);
+        for (Score s : scores) tree.add(s.time);
+        queries = new int[1024];
+        for (int k = 0; k < queries.length; k++) queries[k] = scores.get(k * 7919 % count).time;
+    }
+
+    @Benchmark
+    public List<Score> sort() {
+        List<Score> sorted = new ArrayList<>(scores);
+        sorted.sort(Firebase.BY_TIME);
+        return sorted;
+    }
+
+    @Benchmark
+    public RankTree buildTree() {
+        RankTree t = new RankTree();
+        for (Score s : scores) t.add(s.time);
+        return t;
+    }
+
+    @Benchmark
+    public int rank() {
+        return tree.rank(queries[next++ & (queries.length - 1)]);
+    }
+}
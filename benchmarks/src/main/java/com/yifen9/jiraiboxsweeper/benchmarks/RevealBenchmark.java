@@ -0,0 +1,46 @@
+package com.yifen9.jiraiboxsweeper.benchmarks;
+
+import com.yifen9.jiraiboxsweeper.model.Board;
+import com.yifen9.jiraiboxsweeper.model.Config;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// The flood fill from a first click on a 64x64 board. Sparse boards open in
+// one big sweep, dense ones barely past the click. Take place off reveal to
+// get the fill alone.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RevealBenchmark {
+    private static final int SIDE = 64;
+
+    @Param({"0.05", "0.12", "0.20", "0.30"})
+    public double density;
+
+    private Board board;
+    private long seed;
+
+    @Setup
+    public void setup() {
+        board = new Board(new Config(SIDE, SIDE, (int) Math.round(SIDE * SIDE * density)), 1);
+    }
+
+    @Benchmark
+    public Board place() {
+        board.reset(seed++);
+        board.place(SIDE / 2, SIDE / 2);
+        return board;
+    }
+
+    @Benchmark
+    public int reveal() {
+        board.reset(seed++);
+        board.reveal(SIDE / 2, SIDE / 2);
+        return board.getChanges().size();
+    }
+}
@@ -0,0 +1,93 @@
+package com.yifen9.jiraiboxsweeper.benchmarks;
+
+import com.yifen9.jiraiboxsweeper.model.Config;
+import com.yifen9.jiraiboxsweeper.service.Firebase;
+import com.yifen9.jiraiboxsweeper.service.Firebase.Score;
+import com.yifen9.jiraiboxsweeper.service.Leaderboard;
+import com.yifen9.jiraiboxsweeper.service.ScoreReader;
+
+import com.sun.net.httpserver.HttpServer;
+import okio.Buffer;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Reading score pages: the streaming reader on its own, the JSON tree it
+// replaced, and whole fetches from a local server standing in for the database
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoresBenchmark {
+    @Param({"100", "1000", "10000"})
+    public int count;
+
+    private byte[] page;
+    private byte[] newest;
+    private HttpServer server;
+    private Firebase firebase;
+
+    @Setup
+    public void setup() throws IOException {
+        List<Score> scores = Benchmarks.scores(count);
+        page = Benchmarks.fixture(scores);
+        newest = Benchmarks.fixture(scores.subList(count - 1, count));
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        // Any query gets the whole page back, except the newest key lookup
+        server.createContext("/", ex -> {
+            String query = ex.getRequestURI().getRawQuery();
+            byte[] body = query != null && query.contains("limitToLast") ? newest : page;
+            ex.sendResponseHeaders(200, body.length);
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        firebase = new Firebase("http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Benchmark
+    public List<Score> readStreaming() throws IOException {
+        List<Score> out = new ArrayList<>(count);
+        new ScoreReader(new Buffer().write(page)).readAll(out::add);
+        return out;
+    }
+
+    @Benchmark
+    public List<Score> readJsonTree() {
+        JSONObject level = new JSONObject(new String(page, StandardCharsets.UTF_8));
+        List<Score> out = new ArrayList<>(count);
+        for (String key : level.keySet()) {
+            JSONObject o = level.getJSONObject(key);
+            out.add(new Score(key, o.getString("name"), o.getInt("time"),
+                    Long.parseUnsignedLong(o.getString("seed"), 16)));
+        }
+        return out;
+    }
+
+    @Benchmark
+    public int fetchTop() throws IOException {
+        return firebase.fetchTop(Config.EXPERT, 0, count, s -> { });
+    }
+
+    // First page of a level: newest key, then the page, sorted into the board
+    @Benchmark
+    public List<Score> leaderboardFirstPage() throws IOException {
+        return new Leaderboard(firebase, Config.EXPERT).refresh(count);
+    }
+}
@@ -0,0 +1,69 @@
+package com.yifen9.jiraiboxsweeper.benchmarks;
+
+import com.yifen9.jiraiboxsweeper.model.Board;
+import com.yifen9.jiraiboxsweeper.model.Config;
+import com.yifen9.jiraiboxsweeper.solver.Probabilities;
+import com.yifen9.jiraiboxsweeper.solver.Solver;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Hint and heatmap work on positions where deduction has run out, which is
+// where the solver has the most to count. Boards are only read, never played.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolverBenchmark {
+    private static final int POSITIONS = 64;
+
+    @Param({"Intermediate", "Expert"})
+    public String level;
+
+    private Board[] boards;
+    private Solver[] solved;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Config config = Benchmarks.level(level);
+        List<Board> stuck = new ArrayList<>();
+        for (long seed = 0; stuck.size() < POSITIONS; seed++) {
+            Board board = new Board(config, seed);
+            board.reveal(config.rows / 2, config.cols / 2);
+            Solver solver = new Solver(board);
+            solver.update(board.getChanges());
+            for (int i; !board.isCleared(); ) {
+                solver.solve();
+                if ((i = solver.findSafe()) < 0) break;
+                board.reveal(i / config.cols, i % config.cols);
+                solver.update(board.getChanges());
+            }
+            if (!board.isCleared()) stuck.add(board);
+        }
+        boards = stuck.toArray(new Board[0]);
+        solved = new Solver[POSITIONS];
+        for (int k = 0; k < POSITIONS; k++) {
+            solved[k] = new Solver(boards[k]);
+            solved[k].solve();
+        }
+    }
+
+    // A hint on a game the solver has not followed: every rule from scratch
+    @Benchmark
+    public int solve() {
+        Solver solver = new Solver(boards[next++ & (POSITIONS - 1)]);
+        solver.solve();
+        return solver.findSafe();
+    }
+
+    @Benchmark
+    public double[] probabilities() {
+        return new Probabilities(solved[next++ & (POSITIONS - 1)]).compute(1_000_000_000L);
+    }
+}
@@ -0,0 +1,9 @@
+package com.yifen9.jiraiboxsweeper;
+
+// Main class of the shaded jar, java -jar refuses one that extends Application
+// when JavaFX sits on the class path instead of the module path
+public class Launcher {
+    public static void main(String[] args) throws Exception {
+        Main.main(args);
+    }
+}
@@ -1,13 +1,39 @@
 package com.yifen9.jiraiboxsweeper;
 
 import com.yifen9.jiraiboxsweeper.controller.Game;
+import com.yifen9.jiraiboxsweeper.server.GameServer;
+import com.yifen9.jiraiboxsweeper.server.LoadTest;
+import com.yifen9.jiraiboxsweeper.sim.Simulation;
+import com.yifen9.jiraiboxsweeper.sim.Verifier;
 
 import javafx.application.Application;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.stage.Stage;
 
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
 public class Main extends Application {
+    // Set to a file to append the time to first frame there and quit, CI uses it to track startup
+    private static final String STARTUP_PROBE = "jiraibox.startupProbe";
+    // Set while dumping the class data sharing archive at package time
+    private static final String CDS_TRAINING = "jiraibox.cdsTraining";
+    private static final String[] CDS_PACKAGES = {
+        "com/yifen9/", "javafx/", "com/sun/javafx/", "com/sun/glass/", "com/sun/prism/",
+        "okhttp3/", "okio/", "kotlin/", "org/json/"
+    };
+
     public void start(Stage stage) {
         try {
             Game game = new Game();
@@ -15,14 +41,85 @@ public class Main extends Application {
 
             stage.setTitle("Jiraibox Sweeper");
             stage.setScene(scene);
+            scene.addPostLayoutPulseListener(new Runnable() {
+                public void run() {
+                    scene.removePostLayoutPulseListener(this);
+                    firstFrame();
+                }
+            });
             stage.show();
+            game.startServices();
         } catch (Exception e) {
             e.printStackTrace();
             new Alert(Alert.AlertType.ERROR, e.toString()).showAndWait();
         }
     }
 
-    public static void main(String[] args) {
+    private static void firstFrame() {
+        String probe = System.getProperty(STARTUP_PROBE);
+        if (probe == null) return;
+        Instant started = ProcessHandle.current().info().startInstant().orElse(null);
+        if (started == null) return;
+        long millis = System.currentTimeMillis() - started.toEpochMilli();
+        System.out.println("First frame after " + millis + " ms");
+        try {
+            Files.writeString(Paths.get(probe), millis + "\n", StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        // A plain exit, HTTP client threads would otherwise hold the JVM open a while
+        System.exit(0);
+    }
+
+    // Loads, without running, every class startup is likely to touch so the JVM
+    // archives them. Needs no display, the build machine may not have one.
+    private static void train() throws IOException, URISyntaxException {
+        Path jar = Paths.get(Main.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        ClassLoader loader = Main.class.getClassLoader();
+        int loaded = 0;
+        try (JarFile in = new JarFile(jar.toFile())) {
+            for (Enumeration<JarEntry> e = in.entries(); e.hasMoreElements(); ) {
+                String name = e.nextElement().getName();
+                if (!name.endsWith(".class") || name.contains("-") || !wanted(name)) continue;
+                try {
+                    Class.forName(name.substring(0, name.length() - 6).replace('/', '.'), false, loader);
+                    loaded++;
+                } catch (Throwable t) {
+                    // Optional parts, native glue for other platforms and the like
+                }
+            }
+        }
+        System.out.println("Loaded " + loaded + " classes for the archive");
+    }
+
+    private static boolean wanted(String name) {
+        for (String p : CDS_PACKAGES)
+            if (name.startsWith(p)) return true;
+        return false;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (Boolean.getBoolean(CDS_TRAINING)) {
+            train();
+            return;
+        }
+        if (args.length > 0 && args[0].equals("sim")) {
+            Simulation.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("verify")) {
+            Verifier.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("serve")) {
+            GameServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("loadtest")) {
+            LoadTest.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         launch(args);
     }
-}
\ No newline at end of file
+}
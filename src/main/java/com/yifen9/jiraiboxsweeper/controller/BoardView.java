@@ -0,0 +1,31 @@
+package com.yifen9.jiraiboxsweeper.controller;
+
+import com.yifen9.jiraiboxsweeper.model.Board;
+
+import javafx.scene.Node;
+import javafx.scene.input.MouseButton;
+
+// Something that draws a board and reports clicks by row and column
+interface BoardView {
+    interface CellAction {
+        void apply(int r, int c, MouseButton button);
+    }
+
+    Node getNode();
+
+    // Unscaled size, Game scales the node to fit its holder
+    double getWidth();
+
+    double getHeight();
+
+    void paintCell(Board board, int i);
+
+    void paintAll(Board board);
+
+    // Points a cell out until it is next painted
+    void highlight(int i);
+
+    // Tints hidden cells by their chance of a mine, -1 leaves a cell plain.
+    // Kept through later paints until replaced, null takes it away.
+    void showProbabilities(Board board, double[] probs);
+}
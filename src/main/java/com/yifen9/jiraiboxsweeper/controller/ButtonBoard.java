@@ -0,0 +1,88 @@
+package com.yifen9.jiraiboxsweeper.controller;
+
+import com.yifen9.jiraiboxsweeper.model.Board;
+import com.yifen9.jiraiboxsweeper.model.Cell;
+
+import javafx.geometry.Insets;
+import javafx.scene.Node;
+import javafx.scene.control.Button;
+import javafx.scene.layout.GridPane;
+
+// One Button per cell, fine for the usual board sizes
+class ButtonBoard implements BoardView {
+    private static final double CELL_SIZE = 30 + 2;
+    // The faded look of a disabled button, open cells stay enabled so a
+    // click on a number still reaches auto chord
+    private static final String SEEN_STYLE = "-fx-opacity: 0.4;";
+
+    private final GridPane gridPane = new GridPane();
+    private final Button[] cells;
+    private final int rows, cols;
+    private double[] probs;
+
+    ButtonBoard(int rows, int cols, CellAction action) {
+        this.rows = rows;
+        this.cols = cols;
+        cells = new Button[rows * cols];
+        gridPane.setHgap(2);
+        gridPane.setVgap(2);
+        gridPane.setPadding(new Insets(2));
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                Button cb = new Button();
+                cb.setPrefSize(30, 30);
+                cb.setFocusTraversable(false);
+                final int rr = r, cc = c;
+                cb.setOnMouseClicked(e -> action.apply(rr, cc, e.getButton()));
+                gridPane.add(cb, c, r);
+                cells[r * cols + c] = cb;
+            }
+        }
+    }
+
+    public Node getNode() {
+        return gridPane;
+    }
+
+    public double getWidth() {
+        return cols * CELL_SIZE;
+    }
+
+    public double getHeight() {
+        return rows * CELL_SIZE;
+    }
+
+    public void paintCell(Board board, int i) {
+        Cell cell = board.getCell(i);
+        Button cb = cells[i];
+        if (cell.isSeen) {
+            cb.setStyle(SEEN_STYLE);
+            if (cell.isMine) cb.setText("✹");
+            else if (cell.adjMines > 0) cb.setText(String.valueOf(cell.adjMines));
+            else cb.setText("");
+        } else {
+            cb.setStyle("");
+            cb.setText(cell.isFlag ? "⚑" : "");
+            if (!cell.isFlag && probs != null && probs[i] >= 0) {
+                // Green for safe through to red for a sure mine
+                cb.setText(String.valueOf(Math.round(probs[i] * 100)));
+                cb.setStyle(String.format("-fx-font-size: 9; -fx-background-color: hsb(%d, 50%%, 100%%);",
+                        Math.round(120 * (1 - probs[i]))));
+            }
+        }
+    }
+
+    public void paintAll(Board board) {
+        for (int i = 0; i < cells.length; i++) paintCell(board, i);
+    }
+
+    public void showProbabilities(Board board, double[] probs) {
+        if (probs == null && this.probs == null) return;
+        this.probs = probs;
+        paintAll(board);
+    }
+
+    public void highlight(int i) {
+        cells[i].setStyle("-fx-border-color: limegreen; -fx-border-width: 2;");
+    }
+}
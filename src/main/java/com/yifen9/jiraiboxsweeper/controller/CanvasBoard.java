@@ -0,0 +1,138 @@
+package com.yifen9.jiraiboxsweeper.controller;
+
+import com.yifen9.jiraiboxsweeper.model.Board;
+import com.yifen9.jiraiboxsweeper.model.Cell;
+
+import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.input.MouseButton;
+import javafx.scene.paint.Color;
+
+// Draws only the visible part of the board on one canvas, drag to pan and scroll to zoom
+class CanvasBoard implements BoardView {
+    private static final double CELL_SIZE = 32;
+    private static final double MAX_VIEW = 960;
+    private static final double MIN_CELL = 4;
+    private static final double DRAG_SLOP = 4;
+
+    private final Canvas canvas;
+    private final GraphicsContext g;
+    private final int rows, cols;
+
+    private final Glyphs glyphs = new Glyphs();
+
+    private Board board;
+    private double[] probs;
+    private double cell = CELL_SIZE;
+    // Board pixel shown at the top left corner of the canvas
+    private double offsetX, offsetY;
+
+    private double pressX, pressY;
+    private boolean dragging;
+
+    CanvasBoard(int rows, int cols, CellAction action) {
+        this.rows = rows;
+        this.cols = cols;
+        canvas = new Canvas(Math.min(cols * CELL_SIZE, MAX_VIEW), Math.min(rows * CELL_SIZE, MAX_VIEW));
+        g = canvas.getGraphicsContext2D();
+
+        canvas.setOnMousePressed(e -> {
+            pressX = e.getX();
+            pressY = e.getY();
+            dragging = false;
+        });
+        canvas.setOnMouseDragged(e -> {
+            double dx = e.getX() - pressX, dy = e.getY() - pressY;
+            if (!dragging && Math.hypot(dx, dy) < DRAG_SLOP) return;
+            dragging = true;
+            panTo(offsetX - dx, offsetY - dy);
+            pressX = e.getX();
+            pressY = e.getY();
+        });
+        canvas.setOnMouseReleased(e -> {
+            if (dragging) return;
+            int c = (int) Math.floor((e.getX() + offsetX) / cell);
+            int r = (int) Math.floor((e.getY() + offsetY) / cell);
+            if (r >= 0 && r < rows && c >= 0 && c < cols) action.apply(r, c, e.getButton());
+        });
+        canvas.setOnScroll(e -> {
+            double factor = e.getDeltaY() > 0 ? 1.25 : 0.8;
+            double next = Math.max(minCell(), Math.min(CELL_SIZE * 2, cell * factor));
+            // Keep the cell under the pointer in place
+            double bx = (e.getX() + offsetX) / cell, by = (e.getY() + offsetY) / cell;
+            cell = next;
+            panTo(bx * cell - e.getX(), by * cell - e.getY());
+        });
+    }
+
+    private double minCell() {
+        return Math.max(MIN_CELL, Math.min(canvas.getWidth() / cols, canvas.getHeight() / rows));
+    }
+
+    private void panTo(double x, double y) {
+        offsetX = Math.max(0, Math.min(x, cols * cell - canvas.getWidth()));
+        offsetY = Math.max(0, Math.min(y, rows * cell - canvas.getHeight()));
+        if (board != null) paintAll(board);
+    }
+
+    public Node getNode() {
+        return canvas;
+    }
+
+    public double getWidth() {
+        return canvas.getWidth();
+    }
+
+    public double getHeight() {
+        return canvas.getHeight();
+    }
+
+    public void paintCell(Board board, int i) {
+        this.board = board;
+        int r = i / cols, c = i % cols;
+        double x = c * cell - offsetX, y = r * cell - offsetY;
+        if (x + cell <= 0 || y + cell <= 0 || x >= canvas.getWidth() || y >= canvas.getHeight()) return;
+        draw(i, x, y);
+    }
+
+    public void paintAll(Board board) {
+        this.board = board;
+        g.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        int c0 = (int) (offsetX / cell), r0 = (int) (offsetY / cell);
+        int c1 = Math.min(cols - 1, (int) ((offsetX + canvas.getWidth()) / cell));
+        int r1 = Math.min(rows - 1, (int) ((offsetY + canvas.getHeight()) / cell));
+        for (int r = r0; r <= r1; r++) {
+            double y = r * cell - offsetY;
+            for (int c = c0; c <= c1; c++) draw(r * cols + c, c * cell - offsetX, y);
+        }
+    }
+
+    private void draw(int i, double x, double y) {
+        Cell c = board.getCell(i);
+        g.drawImage(glyphs.get(glyphOf(c), cell), x, y, cell, cell);
+        if (probs != null && probs[i] >= 0 && !c.isSeen && !c.isFlag) {
+            // Green for safe through to red for a sure mine
+            g.setFill(Color.hsb(120 * (1 - probs[i]), 0.8, 1, 0.55));
+            g.fillRect(x, y, cell, cell);
+        }
+    }
+
+    public void showProbabilities(Board board, double[] probs) {
+        if (probs == null && this.probs == null) return;
+        this.probs = probs;
+        paintAll(board);
+    }
+
+    public void highlight(int i) {
+        double x = i % cols * cell - offsetX, y = i / cols * cell - offsetY;
+        g.setStroke(Color.LIMEGREEN);
+        g.setLineWidth(Math.max(1, cell / 10));
+        g.strokeRect(x + 1, y + 1, cell - 2, cell - 2);
+    }
+
+    private static int glyphOf(Cell cell) {
+        if (!cell.isSeen) return cell.isFlag ? Glyphs.FLAG : Glyphs.HIDDEN;
+        return cell.isMine ? Glyphs.MINE : cell.adjMines;
+    }
+}
@@ -0,0 +1,135 @@
+package com.yifen9.jiraiboxsweeper.controller;
+
+import com.yifen9.jiraiboxsweeper.model.World;
+
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Pane;
+import javafx.stage.Stage;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// A window onto an endless world: drag to pan, scroll to zoom, left click
+// opens or chords, right click flags. The game ends on the first mine and
+// scores the safe cells opened until then.
+public class EndlessBoard {
+    private static final double CELL_SIZE = 32;
+    private static final double MIN_CELL = 8;
+    private static final double DRAG_SLOP = 4;
+    private static final double DENSITY = 0.16;
+
+    private final Canvas canvas = new Canvas();
+    private final GraphicsContext g = canvas.getGraphicsContext2D();
+    private final Glyphs glyphs = new Glyphs();
+    private final Label status = new Label();
+
+    private World world;
+    private double cell = CELL_SIZE;
+    // World pixel shown at the top left corner, the origin starts in the middle
+    private double offsetX, offsetY;
+
+    private double pressX, pressY;
+    private boolean dragging;
+
+    public void show() {
+        Pane holder = new Pane(canvas);
+        holder.setMinSize(0, 0);
+        canvas.widthProperty().bind(holder.widthProperty());
+        canvas.heightProperty().bind(holder.heightProperty());
+        canvas.widthProperty().addListener((o, old, n) -> paint());
+        canvas.heightProperty().addListener((o, old, n) -> paint());
+
+        canvas.setOnMousePressed(e -> {
+            pressX = e.getX();
+            pressY = e.getY();
+            dragging = false;
+        });
+        canvas.setOnMouseDragged(e -> {
+            double dx = e.getX() - pressX, dy = e.getY() - pressY;
+            if (!dragging && Math.hypot(dx, dy) < DRAG_SLOP) return;
+            dragging = true;
+            offsetX -= dx;
+            offsetY -= dy;
+            pressX = e.getX();
+            pressY = e.getY();
+            paint();
+        });
+        canvas.setOnMouseReleased(e -> {
+            if (dragging || world.isExploded()) return;
+            int x = (int) Math.floor((e.getX() + offsetX) / cell);
+            int y = (int) Math.floor((e.getY() + offsetY) / cell);
+            if (e.getButton() == MouseButton.PRIMARY) {
+                if (world.isSeen(x, y)) world.expand(x, y);
+                else world.reveal(x, y);
+            } else if (e.getButton() == MouseButton.SECONDARY) {
+                world.flag(x, y);
+            }
+            paint();
+        });
+        canvas.setOnScroll(e -> {
+            double factor = e.getDeltaY() > 0 ? 1.25 : 0.8;
+            double next = Math.max(MIN_CELL, Math.min(CELL_SIZE * 2, cell * factor));
+            // Keep the cell under the pointer in place
+            double bx = (e.getX() + offsetX) / cell, by = (e.getY() + offsetY) / cell;
+            cell = next;
+            offsetX = bx * cell - e.getX();
+            offsetY = by * cell - e.getY();
+            paint();
+        });
+
+        Button restart = new Button("New World");
+        restart.setOnAction(e -> start());
+        HBox bar = new HBox(10, restart, status);
+        bar.setAlignment(Pos.CENTER_LEFT);
+        bar.setPadding(new Insets(5));
+        BorderPane root = new BorderPane(holder);
+        root.setBottom(bar);
+
+        Stage stage = new Stage();
+        stage.setTitle("Jiraibox Sweeper - Endless");
+        stage.setScene(new Scene(root, 900, 650));
+        stage.show();
+        start();
+    }
+
+    private void start() {
+        world = new World(ThreadLocalRandom.current().nextLong(), DENSITY);
+        cell = CELL_SIZE;
+        offsetX = -canvas.getWidth() / 2;
+        offsetY = -canvas.getHeight() / 2;
+        // The origin is always an opening
+        world.reveal(0, 0);
+        paint();
+    }
+
+    private void paint() {
+        if (world == null) return;
+        double w = canvas.getWidth(), h = canvas.getHeight();
+        g.clearRect(0, 0, w, h);
+        int x0 = (int) Math.floor(offsetX / cell), y0 = (int) Math.floor(offsetY / cell);
+        int x1 = (int) Math.floor((offsetX + w) / cell), y1 = (int) Math.floor((offsetY + h) / cell);
+        boolean over = world.isExploded();
+        for (int y = y0; y <= y1; y++)
+            for (int x = x0; x <= x1; x++)
+                g.drawImage(glyphs.get(glyphOf(x, y, over), cell), x * cell - offsetX, y * cell - offsetY, cell, cell);
+        status.setText(String.format("%s%,d cells opened · %d chunks decoded, %d packed · %,d KB",
+                over ? "Boom! " : "", world.getOpened(), world.getHotChunks(), world.getPackedChunks(),
+                world.getFootprint() / 1024));
+    }
+
+    // Hidden cells are read without generating anything, once the game is
+    // over the mines on screen are shown too
+    private int glyphOf(int x, int y, boolean over) {
+        if (world.isSeen(x, y)) return world.isMine(x, y) ? Glyphs.MINE : world.getAdjacent(x, y);
+        if (world.isFlagged(x, y)) return Glyphs.FLAG;
+        return over && world.isMine(x, y) ? Glyphs.MINE : Glyphs.HIDDEN;
+    }
+}
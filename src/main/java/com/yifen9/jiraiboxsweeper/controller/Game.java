@@ -1,11 +1,29 @@
 package com.yifen9.jiraiboxsweeper.controller;
 
-import com.yifen9.jiraiboxsweeper.model.Cell;
+import com.yifen9.jiraiboxsweeper.engine.BoardPool;
+import com.yifen9.jiraiboxsweeper.engine.GameListener;
+import com.yifen9.jiraiboxsweeper.engine.GameSession;
+import com.yifen9.jiraiboxsweeper.engine.MoveLog;
+import com.yifen9.jiraiboxsweeper.metrics.Histogram;
+import com.yifen9.jiraiboxsweeper.metrics.Metrics;
 import com.yifen9.jiraiboxsweeper.model.Board;
+import com.yifen9.jiraiboxsweeper.model.CellBuffer;
+import com.yifen9.jiraiboxsweeper.model.Config;
+import com.yifen9.jiraiboxsweeper.model.RankTree;
 import com.yifen9.jiraiboxsweeper.service.Timer;
+import com.yifen9.jiraiboxsweeper.solver.NoGuess;
+import com.yifen9.jiraiboxsweeper.solver.Probabilities;
+import com.yifen9.jiraiboxsweeper.solver.Solver;
 import com.yifen9.jiraiboxsweeper.service.Firebase;
+import com.yifen9.jiraiboxsweeper.service.Firebase.Score;
+import com.yifen9.jiraiboxsweeper.service.Leaderboard;
+import com.yifen9.jiraiboxsweeper.service.Network;
+import com.yifen9.jiraiboxsweeper.service.Outbox;
 
+import javafx.animation.AnimationTimer;
+import javafx.animation.KeyFrame;
 import javafx.animation.ParallelTransition;
+import javafx.animation.Timeline;
 import javafx.animation.TranslateTransition;
 import javafx.application.Platform;
 import javafx.beans.property.SimpleIntegerProperty;
@@ -13,8 +31,10 @@ import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.collections.transformation.SortedList;
+import javafx.geometry.Bounds;
 import javafx.geometry.HPos;
 import javafx.geometry.Insets;
+import javafx.geometry.Orientation;
 import javafx.geometry.Pos;
 import javafx.geometry.VPos;
 import javafx.scene.Group;
@@ -25,45 +45,142 @@ import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.*;
 import javafx.scene.transform.Scale;
+import javafx.util.Duration;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
 
-public class Game {
-    private static final int ROWS = 9, COLS = 9;
+public class Game implements GameListener {
+    // Above this many cells the board is drawn on a canvas instead of buttons
+    private static final int BUTTON_LIMIT = 40 * 40;
 
-    private final double cellSize = 30 + 2;
-    private final double boardWidth = COLS * cellSize;
-    private final double boardHeight = ROWS * cellSize;
+    private double boardWidth;
+    private double boardHeight;
 
-    private final Board board;
+    private final BoardPool boards = new BoardPool();
+    private final GameSession session;
     private final Timer timer;
 
-    private final Firebase firebase;
-
-    private final GridPane gridPane = new GridPane();
+    // Scores shown per page of the ranking table
+    private static final int RANK_PAGE = 50;
+    // Boards tried per first click before settling for one that needs a guess
+    private static final int NO_GUESS_ATTEMPTS = 1000;
+    // Time the heatmap may take before it settles for sampled counts
+    private static final long HEATMAP_BUDGET_NANOS = 150_000_000;
+
+    private static final Histogram FLUSH_TIME = Metrics.timer("fx.flush");
+    // Gap between animation pulses, a stalled FX thread shows up here
+    private static final Histogram FRAME_TIME = Metrics.timer("fx.frame");
+    private static final Histogram HEATMAP_TIME = Metrics.timer("solver.heatmap");
+
+    // Set on the FX thread once startServices has built them, null until then
+    private Firebase firebase;
+    private final Network network = new Network();
+    private Outbox outbox;
+    private final CompletableFuture<Void> servicesReady = new CompletableFuture<>();
+    private final Map<Config, Leaderboard> leaderboards = new HashMap<>();
+    // The level whose scores the ranking table shows
+    private Leaderboard ranking;
+
+    private BoardView view;
+    private int viewRows, viewCols;
+    // Cells waiting for the next repaint
+    private boolean[] dirtyMark = new boolean[0];
+    private final CellBuffer dirty = new CellBuffer();
+    private boolean fullDirty;
+    private boolean flushPending;
     private final Label timerLabel = new Label("00:00");
     private final TableView<Score> rankingTable = new TableView<>();
     private final ObservableList<Score> rawRanking = FXCollections.observableArrayList();
+    // Times of the shown scores, answers rank queries in log time
+    private final RankTree rankTree = new RankTree();
+    private final Set<String> shownKeys = new HashSet<>();
 
     private final TableView<Stat> statsTable = new TableView<>();
-    private final ObservableList<Stat> statsList = FXCollections.observableArrayList();
+    // Fixed rows, a tick only changes their values
+    private final Stat timeStat = new Stat("Time");
+    private final Stat minesStat = new Stat("Mines");
+    private final ObservableList<Stat> statsList = FXCollections.observableArrayList(timeStat, minesStat);
 
     private final CheckBox autoUploadCheck = new CheckBox("Auto Record");
+    private final CheckBox noGuessCheck = new CheckBox("No Guess");
+    private final CheckBox autoChordCheck = new CheckBox("Auto Chord");
+    private final CheckBox heatmapCheck = new CheckBox("Heatmap");
+    private final CheckBox metricsCheck = new CheckBox("Metrics");
+    // Rows below the fixed stats while the metrics overlay is on
+    private final Map<String, Stat> metricStats = new HashMap<>();
+    private final Timeline metricsRefresh = new Timeline(new KeyFrame(Duration.seconds(1), e -> showMetrics()));
+    private final AnimationTimer frames = new AnimationTimer() {
+        private long last;
+        @Override
+        public void handle(long now) {
+            if (last != 0) FRAME_TIME.record(now - last);
+            last = now;
+        }
+        @Override
+        public void stop() {
+            super.stop();
+            last = 0;
+        }
+    };
+    // Built on first use, then fed every move
+    private Solver solver;
+    // Bumped per request, a heatmap that arrives after a newer move is dropped
+    private int heatmapGen;
+    private boolean heatmapDirty;
+    // Playback of a recorded game, null while the player is the one clicking
+    private Timeline replay;
+    // The unplayed board a no-guess search is running for, clicks on it wait
+    private Board generating;
+    // The last finished game, what the Replay button plays
+    private Config lastConfig;
+    private long lastSeed;
+    private byte[] lastLog;
+    private final ChoiceBox<Config> levelChoice = new ChoiceBox<>(FXCollections.observableArrayList(Config.presets()));
     private final TextField nameField = new TextField();
 
-    Group boardGroup = new Group(gridPane);
+    Group boardGroup = new Group();
     StackPane boardHolder = new StackPane(boardGroup);
 
     public Game() {
-        board = new Board();
-        timer = new Timer(() -> {this.updateTimer(); this.updateStats();});
-        firebase = new Firebase();
+        this(Config.BEGINNER);
+    }
+
+    public Game(Config config) {
+        session = new GameSession(boards.take(config), System::nanoTime);
+        session.addListener(this);
+        timer = new Timer(session::getElapsedNanos, this::updateTimer);
         timer.reset();
-        loadAllRanking();
+    }
+
+    // Call once the window is showing, the HTTP client and outbox file load off the FX thread
+    public void startServices() {
+        network.submit(() -> {
+            Firebase fb = new Firebase();
+            return Map.entry(fb, new Outbox(fb, network));
+        }).whenComplete((s, e) -> Platform.runLater(() -> {
+            if (e != null) {
+                // Scores waiting on this hear about it through the future
+                e.printStackTrace();
+                servicesReady.completeExceptionally(e);
+                new Alert(Alert.AlertType.ERROR, "Online scores are unavailable: " + e).show();
+                return;
+            }
+            firebase = s.getKey();
+            outbox = s.getValue();
+            // Scores from other players reach the server in between ours
+            outbox.setOnFlushed(() -> Platform.runLater(this::syncRanking));
+            loadAllRanking();
+            servicesReady.complete(null);
+        }));
     }
 
     public Parent createContent() {
@@ -107,13 +224,40 @@ public class Game {
         nameField.prefWidthProperty().bind(module.widthProperty().multiply(0.5));
         module.add(autoUploadCheck,0,0);
         module.add(nameField,1,0);
+        levelChoice.setValue(session.getBoard().getConfig());
+        levelChoice.setMaxWidth(Double.MAX_VALUE);
+        levelChoice.setOnAction(e->{ stopReplay(); onLevel(levelChoice.getValue()); updateStats();});
+        module.add(levelChoice,0,1,2,1);
+        module.add(noGuessCheck,0,2);
+        module.add(autoChordCheck,1,2);
+        heatmapCheck.setOnAction(e->updateHeatmap());
+        module.add(heatmapCheck,0,3);
+        metricsCheck.setOnAction(e->toggleMetrics(metricsCheck.isSelected()));
+        module.add(metricsCheck,1,3);
+        // Launched with -Djiraibox.metrics, show them from the start
+        if (Metrics.isEnabled()) {
+            metricsCheck.setSelected(true);
+            toggleMetrics(true);
+        }
 
         Button reset = new Button("Reset");
-        reset.setOnAction(e->{ onReset(); updateStats();});
+        reset.setOnAction(e->{ stopReplay(); onReset(); updateStats();});
         reset.prefWidthProperty().bind(module.widthProperty().multiply(0.8));
         reset.prefHeightProperty().bind(reset.prefWidthProperty().multiply(0.4));
         reset.setMaxWidth(Double.MAX_VALUE);
-        VBox vbox = new VBox(10,module,reset);
+        Button hint = new Button("Hint");
+        hint.setOnAction(e->showHint());
+        hint.prefWidthProperty().bind(module.widthProperty().multiply(0.8));
+        hint.setMaxWidth(Double.MAX_VALUE);
+        Button endless = new Button("Endless");
+        endless.setOnAction(e->new EndlessBoard().show());
+        endless.prefWidthProperty().bind(module.widthProperty().multiply(0.8));
+        endless.setMaxWidth(Double.MAX_VALUE);
+        Button replayButton = new Button("Replay");
+        replayButton.setOnAction(e->{ if (lastLog != null) playReplay(lastConfig, lastSeed, lastLog); });
+        replayButton.prefWidthProperty().bind(module.widthProperty().multiply(0.8));
+        replayButton.setMaxWidth(Double.MAX_VALUE);
+        VBox vbox = new VBox(10,module,reset,hint,replayButton,endless);
         vbox.setAlignment(Pos.CENTER);
         VBox.setVgrow(vbox, Priority.ALWAYS);
         left.add(vbox,0,1);
@@ -130,16 +274,11 @@ public class Game {
 
         // Center: board
         initGrid();
-        StackPane holder = new StackPane(boardGroup);
+        StackPane holder = boardHolder;
         holder.setMinSize(0,0);
         holder.setAlignment(Pos.CENTER);
         boardGroup.getTransforms().add(new Scale(1,1,boardWidth/2,boardHeight/2));
-        holder.layoutBoundsProperty().addListener((o,old,n)->{
-            double sx = n.getWidth()/boardWidth*0.75;
-            double sy = n.getHeight()/boardHeight*0.75;
-            double s = Math.min(sx,sy);
-            gridPane.setScaleX(s); gridPane.setScaleY(s);
-        });
+        holder.layoutBoundsProperty().addListener((o,old,n)->fitBoard());
         root.add(holder,1,0);
 
         // Right: ranking
@@ -168,6 +307,21 @@ public class Game {
         sl.comparatorProperty().bind(rankingTable.comparatorProperty());
         rankingTable.setItems(sl);
         rankingTable.getSortOrder().setAll(tc);
+        rankingTable.skinProperty().addListener((o,old,skin)->{
+            for (Node n : rankingTable.lookupAll(".scroll-bar")) {
+                if (!(n instanceof ScrollBar)) continue;
+                ScrollBar sb = (ScrollBar) n;
+                if (sb.getOrientation() != Orientation.VERTICAL) continue;
+                sb.valueProperty().addListener((ob,ov,nv)->{ if (nv.doubleValue() >= sb.getMax()) loadMoreRanking(); });
+            }
+        });
+        rankingTable.setRowFactory(t -> {
+            TableRow<Score> row = new TableRow<>();
+            row.setOnMouseClicked(e -> {
+                if (e.getClickCount() == 2 && !row.isEmpty()) showReplay(row.getItem());
+            });
+            return row;
+        });
         tc.setSortType(TableColumn.SortType.ASCENDING);
         VBox right=new VBox(10,rankingTable);
         right.setFillWidth(true); VBox.setVgrow(rankingTable,Priority.ALWAYS);
@@ -182,7 +336,7 @@ public class Game {
         TableColumn<Stat, String> valueCol = new TableColumn<>("Value");
 
         nameCol.setCellValueFactory(c -> new SimpleStringProperty(c.getValue().name));
-        valueCol.setCellValueFactory(c -> new SimpleStringProperty(c.getValue().value));
+        valueCol.setCellValueFactory(c -> c.getValue().value);
 
         statsTable.getColumns().addAll(nameCol, valueCol);
         statsTable.setItems(statsList);
@@ -193,38 +347,39 @@ public class Game {
     }
 
     private void initGrid() {
-        gridPane.setHgap(2);
-        gridPane.setVgap(2);
-        gridPane.setPadding(new Insets(2));
-        for (int r = 0; r < ROWS; r++) {
-            for (int c = 0; c < COLS; c++) {
-                Button cb = new Button();
-                cb.setPrefSize(30, 30);
-                cb.setFocusTraversable(false);
-                final int rr = r, cc = c;
-                cb.setOnMouseClicked(e -> {
-                    if (e.getButton() == MouseButton.PRIMARY) {
-                        if (!board.isInit && !board.isEmpty(rr, cc)){
-                            do {board.reset();}
-                            while (!board.isEmpty(rr, cc));
-                        }
-                        board.isInit = true;
-                        reveal(rr, cc);
-                    }
-                    else if (e.getButton() == MouseButton.SECONDARY) flag(rr, cc);
-                });
-                gridPane.add(cb, c, r);
-            }
-        }
+        Board board = session.getBoard();
+        viewRows = board.getRows();
+        viewCols = board.getCols();
+        BoardView.CellAction action = (r, c, button) -> {
+            if (replay != null || generating == session.getBoard()) return;
+            if (button == MouseButton.PRIMARY) open(r, c);
+            else if (button == MouseButton.SECONDARY) session.flag(r, c);
+        };
+        view = viewRows * viewCols <= BUTTON_LIMIT
+                ? new ButtonBoard(viewRows, viewCols, action)
+                : new CanvasBoard(viewRows, viewCols, action);
+        boardGroup.getChildren().setAll(view.getNode());
+        boardWidth = view.getWidth();
+        boardHeight = view.getHeight();
+        dirtyMark = new boolean[viewRows * viewCols];
+        dirty.clear();
         refreshGrid();
     }
 
+    private void fitBoard() {
+        Bounds n = boardHolder.getLayoutBounds();
+        double sx = n.getWidth()/boardWidth*0.75;
+        double sy = n.getHeight()/boardHeight*0.75;
+        double s = Math.min(sx,sy);
+        view.getNode().setScaleX(s); view.getNode().setScaleY(s);
+    }
+
     private void initRankingTable() {
         rankingTable.getColumns().clear();
 
         TableColumn<Score, Number> rankCol = new TableColumn<>("#");
         rankCol.setCellValueFactory(cell ->
-                new SimpleIntegerProperty(rankingTable.getItems().indexOf(cell.getValue()) + 1)
+                new SimpleIntegerProperty(rankTree.rank(cell.getValue().time))
         );
 
         TableColumn<Score, String> nameCol = new TableColumn<>("Name");
@@ -236,132 +391,382 @@ public class Game {
         timeCol.setCellValueFactory(cell ->
                 new SimpleIntegerProperty(cell.getValue().time)
         );
+        timeCol.setCellFactory(col -> new TableCell<>() {
+            @Override
+            protected void updateItem(Number item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(empty || item == null ? null : seconds(item.intValue()));
+            }
+        });
 
         rankingTable.getColumns().addAll(rankCol, nameCol, timeCol);
         rankingTable.setPrefHeight(500);
     }
 
     private void updateStats() {
-        Platform.runLater(() -> {
-            statsList.setAll(
-                    new Stat("Time",  timerLabel.getText()),
-                    new Stat("Mines", "String.valueOf(board.getRemainingMines())")
-            );
-        });
+        minesStat.value.set(String.valueOf(session.getBoard().getRemainingMines()));
     }
 
     private void loadAllRanking() {
-        new Thread(() -> {
-            try {
-                List<Firebase.Score> all = firebase.fetchAllScores();
-                List<Score> data = all.stream()
-                        .map(fs -> new Score(fs.name, fs.time))
-                        .collect(Collectors.toList());
-
-                Platform.runLater(() -> {
-                    rawRanking.setAll(data);
-                });
-            } catch (IOException e) {
-                e.printStackTrace();
+        if (firebase == null) return;
+        Leaderboard lb = leaderboards.computeIfAbsent(session.getBoard().getConfig(), c -> new Leaderboard(firebase, c));
+        ranking = lb;
+        // A newer refresh, say after another level switch, cancels this one
+        Network.onFx(network.latest("ranking", () -> {
+            // Whatever this level had cached goes up first, then the news
+            List<Score> all = lb.getScores();
+            all.addAll(lb.refresh(RANK_PAGE));
+            return all;
+        }), added -> showRanking(lb, added));
+    }
+
+    // Scores posted since the last look, by anyone
+    private void syncRanking() {
+        Leaderboard lb = ranking;
+        if (lb == null) return;
+        Network.onFx(network.submit(lb::sync), added -> showRanking(lb, added));
+    }
+
+    private void loadMoreRanking() {
+        Leaderboard lb = ranking;
+        if (lb == null || !lb.hasMore()) return;
+        // Scrolling fires this many times, they all share the one request
+        Network.onFx(network.shared(lb, () -> lb.loadMore(RANK_PAGE)), added -> showRanking(lb, added));
+    }
+
+    private void showRanking(Leaderboard lb, List<Score> added) {
+        // A level switch may have happened while this was loading
+        if (lb != ranking) return;
+        List<Score> fresh = new ArrayList<>();
+        for (Score s : added) {
+            if (shownKeys.add(s.key)) {
+                rankTree.add(s.time);
+                fresh.add(s);
             }
-        }).start();
+        }
+        rawRanking.addAll(fresh);
     }
 
-    private void reveal(int r, int c) {
-        boolean hit = board.reveal(r, c);
+    private void clearRanking() {
+        rawRanking.clear();
+        rankTree.clear();
+        shownKeys.clear();
+    }
+
+    @Override
+    public void onReveal(CellBuffer changed) {
+        for (int k = 0; k < changed.size(); k++) markDirty(changed.get(k));
+        if (solver != null) solver.update(changed);
+        heatmapDirty = true;
+    }
+
+    @Override
+    public void onFlag(int index, boolean flagged) {
+        markDirty(index);
+        updateStats();
+    }
+
+    @Override
+    public void onGameOver(boolean won, long millis) {
+        timer.stop();
+        heatmapDirty = true;
         refreshGrid();
-        if (hit) {
-            timer.stop();
-            showAllMines();
-        } else if (board.isCleared()) {
-            timer.stop();
-            showAllMines();
-            int t = timer.getSeconds();
+        // A replay ending is not a new game
+        if (replay != null) return;
+        lastConfig = session.getBoard().getConfig();
+        lastSeed = session.getBoard().getSeed();
+        lastLog = session.getLog().toBytes();
+        syncRanking();
+        if (won) {
+            // Scores are whole milliseconds of the session's monotonic clock
+            int t = (int) millis;
+            long seed = lastSeed;
+            byte[] log = lastLog;
+            timerLabel.setText(clock(t / 1000) + "." + String.format("%03d", t % 1000));
             if(autoUploadCheck.isSelected() && !nameField.getText().trim().isEmpty()) {
                 String player = nameField.getText().trim();
-                if(!player.isEmpty()) addScore(player, t);
+                if(!player.isEmpty()) addScore(lastConfig, player, t, seed, log);
             } else {
                 TextInputDialog dlg = new TextInputDialog();
-                dlg.setHeaderText("Finnished with " + t + " seconds! Now leave your name");
+                int rank = rankTree.rank(t);
+                boolean known = rank <= rankTree.size() || (ranking != null && !ranking.hasMore());
+                dlg.setHeaderText("Finnished with " + seconds(t) + " seconds" + (known ? ", that is #" + rank : "") + "! Now leave your name");
                 Optional<String> name = dlg.showAndWait();
-                name.ifPresent(n -> {
-                    addScore(n, t);
-                    loadAllRanking();
-            });}
+                Config config = lastConfig;
+                name.ifPresent(n -> addScore(config, n, t, seed, log));
+            }
         }
     }
 
-    private void flag(int r, int c) {
-        if (board.flag(r, c)) refreshGrid();
+    @Override
+    public void onReset(Board board) {
+        timer.reset();
+        solver = null;
+        heatmapDirty = true;
+        if (ranking == null || !ranking.getConfig().equals(board.getConfig())) {
+            clearRanking();
+            loadAllRanking();
+        }
+        if (board.getRows() != viewRows || board.getCols() != viewCols) {
+            initGrid();
+            fitBoard();
+        } else {
+            refreshGrid();
+        }
     }
 
-    private void expand(int r, int c) {
-        if (board.expand(r, c)) refreshGrid();
+    private void markDirty(int i) {
+        if (!dirtyMark[i]) {
+            dirtyMark[i] = true;
+            dirty.add(i);
+        }
+        scheduleFlush();
     }
 
     private void refreshGrid() {
-        for (javafx.scene.Node node : gridPane.getChildren()) {
-            if (!(node instanceof Button)) continue;
-            int r = GridPane.getRowIndex(node), c = GridPane.getColumnIndex(node);
-            Cell cell = board.getCell(r, c);
-            Button cb = (Button) node;
-            if (cell.isSeen) {
-                cb.setDisable(true);
-                if (cell.isMine) cb.setText("✹");
-                else if (cell.adjMines > 0) cb.setText(String.valueOf(cell.adjMines));
-                else cb.setText("");
-            } else {
-                cb.setDisable(false);
-                cb.setText(cell.isFlag ? "⚑" : "");
-            }
+        fullDirty = true;
+        scheduleFlush();
+    }
+
+    // Any number of changes before the next pulse end up in a single pass
+    private void scheduleFlush() {
+        if (flushPending) return;
+        flushPending = true;
+        Platform.runLater(this::flushGrid);
+    }
+
+    private void flushGrid() {
+        long t0 = Metrics.start();
+        flushPending = false;
+        Board board = session.getBoard();
+        if (fullDirty) {
+            view.paintAll(board);
+        } else {
+            for (int k = 0; k < dirty.size(); k++) view.paintCell(board, dirty.get(k));
+        }
+        for (int k = 0; k < dirty.size(); k++) dirtyMark[dirty.get(k)] = false;
+        dirty.clear();
+        fullDirty = false;
+        FLUSH_TIME.recordSince(t0);
+        if (heatmapDirty) {
+            heatmapDirty = false;
+            updateHeatmap();
         }
     }
 
-    private void showAllMines() {
-        board.revealAll();
-        refreshGrid();
+    // Solves and counts off the FX thread, so a big frontier never stalls the board
+    private void updateHeatmap() {
+        int gen = ++heatmapGen;
+        Board board = session.getBoard();
+        if (!heatmapCheck.isSelected() || session.isOver() || !board.isPlaced()) {
+            view.showProbabilities(board, null);
+            return;
+        }
+        // The rules and the counting both run on a copy, the FX thread only
+        // pays for copying the board
+        Board snapshot = board.snapshot();
+        Network.onFx(CompletableFuture.supplyAsync(() -> {
+            long t0 = Metrics.start();
+            Solver s = new Solver(snapshot);
+            s.solve();
+            double[] probs = new Probabilities(s).compute(HEATMAP_BUDGET_NANOS);
+            HEATMAP_TIME.recordSince(t0);
+            return probs;
+        }), probs -> {
+            if (gen == heatmapGen) view.showProbabilities(session.getBoard(), probs);
+        });
     }
 
     private void onReset() {
-        board.reset();
-        timer.reset();
-        refreshGrid();
+        session.reset(boards.take(session.getBoard().getConfig()));
     }
 
-    private void updateTimer() {
-        int s = timer.getSeconds();
-        timerLabel.setText(String.format("%02d:%02d", s/60, s%60));
+    private void toggleMetrics(boolean on) {
+        Metrics.setEnabled(on);
+        if (on) {
+            frames.start();
+            metricsRefresh.setCycleCount(Timeline.INDEFINITE);
+            metricsRefresh.play();
+            showMetrics();
+        } else {
+            frames.stop();
+            metricsRefresh.stop();
+            statsList.removeAll(metricStats.values());
+            metricStats.clear();
+        }
     }
 
-    private void addScore(String name, int time) {
-        new Thread(() -> {
-            try {
-                firebase.postScore(name, time);
-                List<Firebase.Score> all = firebase.fetchAllScores();
-                List<Score> data = all.stream()
-                        .map(fs -> new Score(fs.name, fs.time))
-                        .collect(Collectors.toList());
+    // One row per metric that has seen anything, median and 99th percentile
+    private void showMetrics() {
+        for (Histogram h : Metrics.histograms()) {
+            Histogram.Snapshot snap = h.snapshot();
+            if (snap.count == 0) continue;
+            String text = h.unit.equals("ns")
+                    ? String.format("%.2f / %.2f ms", snap.percentile(0.5) / 1e6, snap.percentile(0.99) / 1e6)
+                    : String.format("%d / %d %s", snap.percentile(0.5), snap.percentile(0.99), h.unit);
+            metricStat(h.name).value.set(text);
+        }
+        Metrics.counters().forEach((name, c) -> {
+            if (c.sum() > 0) metricStat(name).value.set(String.valueOf(c.sum()));
+        });
+    }
 
-                Platform.runLater(() -> {
-                    rawRanking.setAll(data);
-                });
-            } catch (IOException e) {
-                e.printStackTrace();
+    private Stat metricStat(String name) {
+        return metricStats.computeIfAbsent(name, n -> {
+            Stat st = new Stat(n);
+            statsList.add(st);
+            return st;
+        });
+    }
+
+    private void open(int r, int c) {
+        Board board = session.getBoard();
+        if (board.isSeen(r * board.getCols() + c)) {
+            if (autoChordCheck.isSelected()) chord(r, c);
+            return;
+        }
+        if (!board.isPlaced() && !board.isFlagged(r * board.getCols() + c) && noGuessCheck.isSelected()
+                && board.getRows() * board.getCols() <= BUTTON_LIMIT) {
+            // Swap in a board that deduction alone clears from this very click,
+            // searched off the FX thread and dropped if the game moved on meanwhile.
+            // Should the search fail the click goes to the board as it is.
+            generating = board;
+            CompletableFuture.supplyAsync(() -> NoGuess.generate(board.getConfig(), r, c, board.getSeed(), NO_GUESS_ATTEMPTS))
+                    .whenComplete((b, e) -> Platform.runLater(() -> {
+                        if (generating == board) generating = null;
+                        if (session.getBoard() != board) return;
+                        if (e != null) {
+                            e.printStackTrace();
+                        } else {
+                            session.replaceBoard(b);
+                            solver = null;
+                        }
+                        session.reveal(r, c);
+                    }));
+            return;
+        }
+        session.reveal(r, c);
+    }
+
+    private Solver solver() {
+        if (solver == null) solver = new Solver(session.getBoard());
+        return solver;
+    }
+
+    // Opens every neighbour of a number that is proven safe. Flagged ones stay
+    // shut, even a wrong flag on a safe cell, since reveal leaves flags alone
+    private void chord(int r, int c) {
+        Board board = session.getBoard();
+        Solver s = solver();
+        s.solve();
+        for (int nr = Math.max(0, r - 1); nr <= Math.min(board.getRows() - 1, r + 1); nr++)
+            for (int nc = Math.max(0, c - 1); nc <= Math.min(board.getCols() - 1, c + 1); nc++)
+                if (s.isSafe(nr * board.getCols() + nc)) session.reveal(nr, nc);
+    }
+
+    private void showHint() {
+        if (session.isOver() || !session.getBoard().isPlaced()) return;
+        Solver s = solver();
+        s.solve();
+        int i = s.findSafe();
+        if (i >= 0) view.highlight(i);
+        else new Alert(Alert.AlertType.INFORMATION, "No cell is provably safe, time to guess").show();
+    }
+
+    // Plays a ranked game, its log comes along only if it was posted from here
+    private void showReplay(Score score) {
+        Leaderboard lb = ranking;
+        if (lb == null) return;
+        if (score.replay != null) {
+            playReplay(lb.getConfig(), score.seed, score.replay);
+            return;
+        }
+        Network.onFx(network.submit(() -> firebase.fetchReplay(lb.getConfig(), score.key)), log -> {
+            if (log == null) new Alert(Alert.AlertType.INFORMATION, "No replay was recorded for this score").show();
+            else playReplay(lb.getConfig(), score.seed, log);
+        });
+    }
+
+    // Deals the same board again and plays the moves at their recorded pace
+    private void playReplay(Config config, long seed, byte[] log) {
+        stopReplay();
+        Timeline t = new Timeline();
+        int cols = config.cols;
+        long at = 0;
+        MoveLog.Reader moves = new MoveLog.Reader(log);
+        try {
+            while (moves.next()) {
+                at += moves.delta;
+                int r = moves.cell / cols, c = moves.cell % cols, action = moves.action;
+                t.getKeyFrames().add(new KeyFrame(Duration.millis(at), e -> {
+                    if (action == MoveLog.FLAG) session.flag(r, c);
+                    else if (action == MoveLog.EXPAND) session.expand(r, c);
+                    else session.reveal(r, c);
+                    updateStats();
+                }));
             }
-        }).start();
+        } catch (IllegalArgumentException e) {
+            new Alert(Alert.AlertType.ERROR, "This replay is damaged").show();
+            return;
+        }
+        if (config.equals(session.getBoard().getConfig())) session.reset(seed);
+        else session.reset(new Board(config, seed));
+        levelChoice.setValue(session.getBoard().getConfig());
+        updateStats();
+        replay = t;
+        t.setOnFinished(e -> { if (replay == t) replay = null; });
+        t.play();
     }
 
-    public static class Score {
-        public final String name;
-        public final int time;
-        public Score(String name, int time) {
-            this.name = name;
-            this.time = time;
+    private void stopReplay() {
+        if (replay == null) return;
+        replay.stop();
+        replay = null;
+    }
+
+    private void onLevel(Config config) {
+        if (config == null || config == session.getBoard().getConfig()) return;
+        session.reset(boards.take(config));
+    }
+
+    private void updateTimer(long s) {
+        String text = clock(s);
+        timerLabel.setText(text);
+        timeStat.value.set(text);
+    }
+
+    private static String clock(long s) {
+        return String.format("%02d:%02d", s/60, s%60);
+    }
+
+    private static String seconds(int millis) {
+        return String.format("%d.%03d", millis / 1000, millis % 1000);
+    }
+
+    // `config` is the level the game was won on, the board may have moved on since
+    private void addScore(Config config, String name, int time, long seed, byte[] log) {
+        if (outbox == null) {
+            // Won before the services came up, record it as soon as they do
+            servicesReady.whenComplete((v, e) -> {
+                if (e == null) addScore(config, name, time, seed, log);
+                else new Alert(Alert.AlertType.ERROR, "Your " + seconds(time) + " s score could not be saved: " + e).show();
+            });
+            return;
+        }
+        Leaderboard lb = leaderboards.get(config);
+        try {
+            // Only a local append here, the outbox uploads in the background
+            Score s = outbox.add(config, name, time, seed, log);
+            if (lb != null) Network.onFx(network.submit(() -> lb.offer(s)), added -> showRanking(lb, added));
+        } catch (IOException e) {
+            e.printStackTrace();
+            new Alert(Alert.AlertType.ERROR, "Your " + seconds(time) + " s score could not be saved: " + e).show();
         }
     }
 
     private static class Stat {
-        final String name, value;
-        Stat(String n, String v) { name = n; value = v; }
+        final String name;
+        final SimpleStringProperty value = new SimpleStringProperty("");
+        Stat(String n) { name = n; }
     }
 }
@@ -0,0 +1,62 @@
+package com.yifen9.jiraiboxsweeper.controller;
+
+import javafx.geometry.VPos;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.TextAlignment;
+
+// Cell tiles for the canvas views, rendered once per zoom level so drawing a
+// cell is a single blit
+class Glyphs {
+    // Slots: 0-8 open with that many neighbours, then mine, hidden, flag
+    static final int MINE = 9, HIDDEN = 10, FLAG = 11;
+    private static final Color[] DIGITS = {
+        Color.TRANSPARENT, Color.BLUE, Color.GREEN, Color.RED, Color.NAVY,
+        Color.MAROON, Color.TEAL, Color.BLACK, Color.GRAY
+    };
+
+    private final Image[] glyphs = new Image[12];
+    private double glyphSize = -1;
+
+    Image get(int k, double cell) {
+        if (glyphSize != cell) build(cell);
+        return glyphs[k];
+    }
+
+    private void build(double cell) {
+        double s = Math.ceil(cell);
+        Canvas scratch = new Canvas(s, s);
+        GraphicsContext sg = scratch.getGraphicsContext2D();
+        SnapshotParameters params = new SnapshotParameters();
+        params.setFill(Color.TRANSPARENT);
+        sg.setTextAlign(TextAlignment.CENTER);
+        sg.setTextBaseline(VPos.CENTER);
+        sg.setFont(Font.font(null, FontWeight.BOLD, s * 0.55));
+        for (int k = 0; k < glyphs.length; k++) {
+            boolean open = k <= MINE;
+            sg.clearRect(0, 0, s, s);
+            sg.setFill(open ? Color.gray(0.95) : Color.gray(0.8));
+            sg.fillRect(0, 0, s, s);
+            if (s >= 8) {
+                sg.setStroke(Color.gray(0.6));
+                sg.strokeRect(0.5, 0.5, s - 1, s - 1);
+            }
+            String text = k == MINE ? "✹" : k == FLAG ? "⚑" : k > 0 && k < MINE ? String.valueOf(k) : null;
+            if (text != null && s >= 8) {
+                sg.setFill(k == MINE || k == FLAG ? Color.BLACK : DIGITS[k]);
+                sg.fillText(text, s / 2, s / 2);
+            } else if (text != null) {
+                // Too small for text, a solid dot still tells mines and flags apart
+                sg.setFill(k == FLAG ? Color.RED : k == MINE ? Color.BLACK : DIGITS[k]);
+                sg.fillRect(s / 4, s / 4, s / 2, s / 2);
+            }
+            glyphs[k] = scratch.snapshot(params, null);
+        }
+        glyphSize = cell;
+    }
+}
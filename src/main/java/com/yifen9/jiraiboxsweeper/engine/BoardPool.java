@@ -0,0 +1,56 @@
+package com.yifen9.jiraiboxsweeper.engine;
+
+import com.yifen9.jiraiboxsweeper.model.Board;
+import com.yifen9.jiraiboxsweeper.model.Config;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Fresh boards for the next games, built and with their mines drawn on a
+// low priority thread, so a new game is a swap and its first click only lays
+// out what was drawn. Taking one queues its replacement.
+public class BoardPool {
+    private static final int PER_CONFIG = 2;
+
+    private final Map<Config, ArrayDeque<Board>> ready = new HashMap<>();
+    // Boards queued on the worker per level, counted against the bound
+    private final Map<Config, Integer> pending = new HashMap<>();
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "board-pool");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    // A ready board if there is one, else a new one built right here
+    public synchronized Board take(Config config) {
+        Board board = ready.computeIfAbsent(config, c -> new ArrayDeque<>()).poll();
+        fill(config);
+        return board != null ? board : new Board(config);
+    }
+
+    private void fill(Config config) {
+        int queued = pending.getOrDefault(config, 0);
+        for (int k = ready.get(config).size() + queued; k < PER_CONFIG; k++) {
+            queued++;
+            worker.execute(() -> {
+                Board board = new Board(config);
+                board.prepare();
+                add(config, board);
+            });
+        }
+        pending.put(config, queued);
+    }
+
+    private synchronized void add(Config config, Board board) {
+        pending.merge(config, -1, Integer::sum);
+        ready.get(config).add(board);
+    }
+
+    public void close() {
+        worker.shutdownNow();
+    }
+}
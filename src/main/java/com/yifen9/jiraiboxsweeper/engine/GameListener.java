@@ -0,0 +1,15 @@
+package com.yifen9.jiraiboxsweeper.engine;
+
+import com.yifen9.jiraiboxsweeper.model.Board;
+import com.yifen9.jiraiboxsweeper.model.CellBuffer;
+
+// Callbacks run on whatever thread drives the session
+public interface GameListener {
+    default void onReveal(CellBuffer cells) {}
+
+    default void onFlag(int index, boolean flagged) {}
+
+    default void onGameOver(boolean won, long millis) {}
+
+    default void onReset(Board board) {}
+}
@@ -0,0 +1,160 @@
+package com.yifen9.jiraiboxsweeper.engine;
+
+import com.yifen9.jiraiboxsweeper.metrics.Histogram;
+import com.yifen9.jiraiboxsweeper.metrics.Metrics;
+import com.yifen9.jiraiboxsweeper.model.Board;
+import com.yifen9.jiraiboxsweeper.model.CellBuffer;
+import com.yifen9.jiraiboxsweeper.model.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+// One game from reset to win or loss, with no UI attached
+public class GameSession {
+    public enum State { READY, PLAYING, WON, LOST }
+
+    // Board time of a reveal or chord, flood fill included, and the cells it opened
+    private static final Histogram OPEN_TIME = Metrics.timer("board.open");
+    private static final Histogram OPEN_CELLS = Metrics.histogram("board.opened", "cells");
+
+    private final LongSupplier clock;
+    private final List<GameListener> listeners = new ArrayList<>();
+
+    private Board board;
+    private State state;
+    private long startNanos;
+    private long endNanos;
+    // Moves that changed the board, each stamped with the same clock read that
+    // ends the game, so the log adds up to exactly the score
+    private final MoveLog log = new MoveLog();
+
+    public GameSession(Config config) {
+        this(new Board(config), System::nanoTime);
+    }
+
+    public GameSession(Board board, LongSupplier clock) {
+        this.clock = clock;
+        start(board);
+    }
+
+    private void start(Board board) {
+        this.board = board;
+        state = State.READY;
+        startNanos = clock.getAsLong();
+        endNanos = startNanos;
+        log.clear();
+    }
+
+    public void addListener(GameListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(GameListener listener) {
+        listeners.remove(listener);
+    }
+
+    public boolean reveal(int r, int c) {
+        if (isOver()) return false;
+        long now = clock.getAsLong();
+        long t0 = Metrics.start();
+        board.reveal(r, c);
+        OPEN_TIME.recordSince(t0);
+        return afterOpen(r, c, MoveLog.REVEAL, now);
+    }
+
+    public boolean expand(int r, int c) {
+        if (isOver()) return false;
+        long now = clock.getAsLong();
+        long t0 = Metrics.start();
+        boolean ok = board.expand(r, c);
+        OPEN_TIME.recordSince(t0);
+        if (!ok) return false;
+        return afterOpen(r, c, MoveLog.EXPAND, now);
+    }
+
+    public boolean flag(int r, int c) {
+        if (isOver()) return false;
+        long now = clock.getAsLong();
+        if (!board.flag(r, c)) return false;
+        record(r, c, MoveLog.FLAG, now);
+        int i = board.getChanges().get(0);
+        boolean flagged = board.getCell(i).isFlag;
+        for (GameListener l : listeners) l.onFlag(i, flagged);
+        return true;
+    }
+
+    private boolean afterOpen(int r, int c, int action, long now) {
+        CellBuffer cells = board.getChanges();
+        if (cells.isEmpty()) return false;
+        OPEN_CELLS.record(cells.size());
+        record(r, c, action, now);
+        state = State.PLAYING;
+        for (GameListener l : listeners) l.onReveal(cells);
+        if (board.isExploded()) finish(State.LOST, now);
+        else if (board.isCleared()) finish(State.WON, now);
+        return true;
+    }
+
+    private void record(int r, int c, int action, long now) {
+        log.add(r * board.getCols() + c, action, (now - startNanos) / 1_000_000);
+    }
+
+    private void finish(State end, long now) {
+        state = end;
+        endNanos = now;
+        board.revealAll();
+        long millis = getElapsedMillis();
+        for (GameListener l : listeners) l.onGameOver(end == State.WON, millis);
+    }
+
+    public void reset() {
+        board.reset();
+        reset(board);
+    }
+
+    public void reset(long seed) {
+        board.reset(seed);
+        reset(board);
+    }
+
+    public void reset(Board board) {
+        start(board);
+        for (GameListener l : listeners) l.onReset(board);
+    }
+
+    // Another deal before the first reveal, as in no-guess mode. The clock and
+    // the log go on, flags carry over so a replay on the new seed matches.
+    public void replaceBoard(Board next) {
+        if (board.isPlaced()) throw new IllegalStateException("Mines already placed");
+        int cols = board.getCols();
+        for (int i = 0; i < board.getRows() * cols; i++)
+            if (board.isFlagged(i) != next.isFlagged(i)) next.flag(i / cols, i % cols);
+        board = next;
+    }
+
+    public Board getBoard() {
+        return board;
+    }
+
+    // Everything played since the last reset, replays on a fresh board of the same seed
+    public MoveLog getLog() {
+        return log;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isOver() {
+        return state == State.WON || state == State.LOST;
+    }
+
+    public long getElapsedNanos() {
+        return (isOver() ? endNanos : clock.getAsLong()) - startNanos;
+    }
+
+    public long getElapsedMillis() {
+        return getElapsedNanos() / 1_000_000;
+    }
+}
@@ -0,0 +1,91 @@
+package com.yifen9.jiraiboxsweeper.engine;
+
+import java.util.Arrays;
+import java.util.Base64;
+
+// Every move of a game packed as unsigned LEB128 varints, two per move:
+// the cell index shifted left past the action, then the milliseconds since
+// the move before. Together with the board seed that is the whole game, a
+// typical expert win takes a few hundred bytes.
+public class MoveLog {
+    public static final int REVEAL = 0, FLAG = 1, EXPAND = 2;
+    private static final int ACTION_BITS = 2;
+
+    private byte[] data = new byte[64];
+    private int size;
+    private long lastMillis;
+
+    // Times only ever go forward, the gaps are stored unsigned
+    public void add(int cell, int action, long atMillis) {
+        if (atMillis < lastMillis) throw new IllegalArgumentException("Move at " + atMillis + " ms before the last at " + lastMillis);
+        writeVarint(((long) cell << ACTION_BITS) | action);
+        writeVarint(atMillis - lastMillis);
+        lastMillis = atMillis;
+    }
+
+    private void writeVarint(long v) {
+        if (size + 10 > data.length) data = Arrays.copyOf(data, data.length * 2);
+        while ((v & ~0x7FL) != 0) {
+            data[size++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        data[size++] = (byte) v;
+    }
+
+    public void clear() {
+        size = 0;
+        lastMillis = 0;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public byte[] toBytes() {
+        return Arrays.copyOf(data, size);
+    }
+
+    // URL safe, so the log can sit in a JSON string or a database path as it is
+    public static String encode(byte[] log) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(log);
+    }
+
+    public static byte[] decode(String text) {
+        return Base64.getUrlDecoder().decode(text);
+    }
+
+    // Walks a log one move at a time without allocating
+    public static class Reader {
+        private final byte[] data;
+        private int pos;
+        public int cell;
+        public int action;
+        public long delta;
+
+        public Reader(byte[] data) {
+            this.data = data;
+        }
+
+        // False at the end, throws on a log that is cut short or out of range
+        public boolean next() {
+            if (pos == data.length) return false;
+            long head = readVarint();
+            if (head >>> ACTION_BITS > Integer.MAX_VALUE) throw new IllegalArgumentException("Cell out of range");
+            cell = (int) (head >>> ACTION_BITS);
+            action = (int) (head & ((1 << ACTION_BITS) - 1));
+            delta = readVarint();
+            return true;
+        }
+
+        private long readVarint() {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (pos == data.length) throw new IllegalArgumentException("Log cut short");
+                byte b = data[pos++];
+                v |= (long) (b & 0x7F) << shift;
+                if (b >= 0) return v;
+            }
+            throw new IllegalArgumentException("Varint too long");
+        }
+    }
+}
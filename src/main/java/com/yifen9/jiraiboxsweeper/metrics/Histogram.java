@@ -0,0 +1,142 @@
+package com.yifen9.jiraiboxsweeper.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Log-linear buckets in the style of HdrHistogram: every power of two is cut
+// into 128 equal slices, so values are exact below 256 and within 1% above
+// while the whole long range fits in a fixed set of counters. Recording is a
+// few lock-free increments, nothing is allocated.
+public class Histogram {
+    private static final int SUB_BITS = 7;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) << SUB_BITS;
+
+    public final String name;
+    // "ns" for timings, anything else is shown as it is
+    public final String unit;
+    // Only the ones Metrics hands out go quiet while metrics are off
+    private final boolean gated;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong();
+
+    // A standalone one that always records, for tallies such as the simulator's
+    public Histogram() {
+        this(null, null, false);
+    }
+
+    Histogram(String name, String unit) {
+        this(name, unit, true);
+    }
+
+    private Histogram(String name, String unit, boolean gated) {
+        this.name = name;
+        this.unit = unit;
+        this.gated = gated;
+    }
+
+    // Negative values are dropped, a clock stepping back is no reason to fail
+    public void record(long value) {
+        if (gated && !Metrics.isEnabled() || value < 0) return;
+        counts.incrementAndGet(bucket(value));
+        sum.add(value);
+        long m = min.get();
+        while (value < m && !min.compareAndSet(m, value)) m = min.get();
+        m = max.get();
+        while (value > m && !max.compareAndSet(m, value)) m = max.get();
+    }
+
+    // Time since `start` from Metrics.start, which is 0 while metrics are off
+    public void recordSince(long start) {
+        if (start != 0) record(System.nanoTime() - start);
+    }
+
+    // Adds everything `other` has recorded, as if it had been recorded here
+    public void merge(Histogram other) {
+        long top = other.max.get();
+        for (int b = 0, end = bucket(top); b <= end; b++) {
+            long c = other.counts.get(b);
+            if (c != 0) counts.addAndGet(b, c);
+        }
+        sum.add(other.sum.sum());
+        long m = min.get(), v = other.min.get();
+        while (v < m && !min.compareAndSet(m, v)) m = min.get();
+        m = max.get();
+        while (top > m && !max.compareAndSet(m, top)) m = max.get();
+    }
+
+    private static int bucket(long v) {
+        if (v < SUB) return (int) v;
+        int exp = 63 - Long.numberOfLeadingZeros(v);
+        return ((exp - SUB_BITS + 1) << SUB_BITS) + (int) (v >>> (exp - SUB_BITS)) - SUB;
+    }
+
+    // Smallest value that lands in bucket b
+    private static long lowest(int b) {
+        int m = b >>> SUB_BITS;
+        return m == 0 ? b : (long) (SUB + (b & (SUB - 1))) << (m - 1);
+    }
+
+    // Copies only up to the bucket of the max, nothing above it has a count
+    public Snapshot snapshot() {
+        long top = max.get();
+        long[] c = new long[bucket(top) + 1];
+        long n = 0;
+        for (int b = 0; b < c.length; b++) n += c[b] = counts.get(b);
+        return new Snapshot(c, n, sum.sum(), n == 0 ? 0 : min.get(), top);
+    }
+
+    public void reset() {
+        for (int b = 0; b < BUCKETS; b++) counts.set(b, 0);
+        sum.reset();
+        min.set(Long.MAX_VALUE);
+        max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+
+    // A copy taken bucket by bucket while recording goes on, good enough for display
+    public static class Snapshot {
+        private final long[] counts;
+        public final long count;
+        public final long sum;
+        public final long min;
+        public final long max;
+
+        Snapshot(long[] counts, long count, long sum, long min, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+        }
+
+        public double mean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        // Highest value in the bucket holding the p-th quantile, kept within what was seen
+        public long percentile(double p) {
+            if (count == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(p * count));
+            long seen = 0;
+            for (int b = 0; b < counts.length; b++) {
+                seen += counts[b];
+                if (seen >= rank) return Math.max(min, Math.min(max, lowest(b + 1) - 1));
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("n=%d mean=%.2f min=%d p50=%d p90=%d p99=%d max=%d",
+                    count, mean(), min, percentile(0.5), percentile(0.9), percentile(0.99), max);
+        }
+    }
+}
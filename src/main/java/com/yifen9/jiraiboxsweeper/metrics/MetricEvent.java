@@ -0,0 +1,52 @@
+package com.yifen9.jiraiboxsweeper.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+// One histogram per event, written by the flight recorder on its own
+// schedule, so a recording started with -XX:StartFlightRecording or jcmd
+// picks the metrics up and nothing runs while none is active
+@Name("jiraibox.Metric")
+@Label("Metric")
+@Category("Jiraibox")
+@Period("10 s")
+@StackTrace(false)
+class MetricEvent extends Event {
+    @Label("Name")
+    String name;
+    @Label("Unit")
+    String unit;
+    @Label("Count")
+    long count;
+    @Label("Mean")
+    long mean;
+    @Label("50th Percentile")
+    long p50;
+    @Label("99th Percentile")
+    long p99;
+    @Label("Max")
+    long max;
+
+    static void register() {
+        FlightRecorder.addPeriodicEvent(MetricEvent.class, () -> {
+            for (Histogram h : Metrics.histograms()) {
+                Histogram.Snapshot s = h.snapshot();
+                if (s.count == 0) continue;
+                MetricEvent e = new MetricEvent();
+                e.name = h.name;
+                e.unit = h.unit;
+                e.count = s.count;
+                e.mean = Math.round(s.mean());
+                e.p50 = s.percentile(0.5);
+                e.p99 = s.percentile(0.99);
+                e.max = s.max;
+                e.commit();
+            }
+        });
+    }
+}
@@ -0,0 +1,143 @@
+package com.yifen9.jiraiboxsweeper.metrics;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Process wide counters and histograms. Call sites keep their own in static
+// fields and check nothing themselves, while metrics are off every record
+// call returns after a single volatile read and start() skips the clock.
+public class Metrics {
+    // "true" to record from launch, a file path to also append a JSON line there every period
+    private static final String PROPERTY = "jiraibox.metrics";
+    private static final long EXPORT_SECONDS = 10;
+
+    private static final Map<String, Histogram> histograms = new ConcurrentSkipListMap<>();
+    private static final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private static volatile boolean enabled;
+    private static boolean jfrRegistered;
+    private static ScheduledExecutorService exporter;
+
+    static {
+        String setting = System.getProperty(PROPERTY);
+        if (setting != null && !setting.equals("false")) {
+            setEnabled(true);
+            if (!setting.equals("true")) startExport(Paths.get(setting), EXPORT_SECONDS);
+        }
+    }
+
+    private Metrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static synchronized void setEnabled(boolean on) {
+        enabled = on;
+        if (on && !jfrRegistered) {
+            jfrRegistered = true;
+            try {
+                MetricEvent.register();
+            } catch (LinkageError e) {
+                // A runtime linked without jdk.jfr, the JSON export still works
+            }
+        }
+    }
+
+    // Timestamp for Histogram.recordSince, 0 while metrics are off
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    // A histogram of nanoseconds
+    public static Histogram timer(String name) {
+        return histogram(name, "ns");
+    }
+
+    public static Histogram histogram(String name, String unit) {
+        return histograms.computeIfAbsent(name, n -> new Histogram(n, unit));
+    }
+
+    public static Counter counter(String name) {
+        return new Counter(counters.computeIfAbsent(name, n -> new LongAdder()));
+    }
+
+    // Sorted by name
+    public static Iterable<Histogram> histograms() {
+        return histograms.values();
+    }
+
+    public static Map<String, LongAdder> counters() {
+        return counters;
+    }
+
+    public static void reset() {
+        for (Histogram h : histograms.values()) h.reset();
+        for (LongAdder c : counters.values()) c.reset();
+    }
+
+    public static JSONObject toJson() {
+        JSONObject hs = new JSONObject();
+        for (Histogram h : histograms.values()) {
+            Histogram.Snapshot s = h.snapshot();
+            if (s.count == 0) continue;
+            hs.put(h.name, new JSONObject()
+                .put("unit", h.unit)
+                .put("count", s.count)
+                .put("mean", Math.round(s.mean()))
+                .put("p50", s.percentile(0.5))
+                .put("p90", s.percentile(0.9))
+                .put("p99", s.percentile(0.99))
+                .put("max", s.max));
+        }
+        JSONObject cs = new JSONObject();
+        counters.forEach((name, c) -> cs.put(name, c.sum()));
+        return new JSONObject().put("time", System.currentTimeMillis()).put("histograms", hs).put("counters", cs);
+    }
+
+    // Appends the totals so far as one JSON line per period, on a daemon thread
+    public static synchronized void startExport(Path file, long periodSeconds) {
+        if (exporter != null) return;
+        exporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-export");
+            t.setDaemon(true);
+            return t;
+        });
+        exporter.scheduleAtFixedRate(() -> {
+            try {
+                Files.writeString(file, toJson() + "\n", StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    public static class Counter {
+        private final LongAdder adder;
+
+        Counter(LongAdder adder) {
+            this.adder = adder;
+        }
+
+        public void increment() {
+            if (enabled) adder.increment();
+        }
+
+        public void add(long n) {
+            if (enabled) adder.add(n);
+        }
+    }
+}
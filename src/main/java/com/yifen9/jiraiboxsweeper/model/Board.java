@@ -1,132 +1,350 @@
 package com.yifen9.jiraiboxsweeper.model;
 
-import java.util.Random;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class Board {
-    public boolean isInit;
+    private final Config config;
+    private long seed;
+    private final int rows;
+    private final int cols;
+    private final int size;
+    private final int words;
+    // Valid bits of the last word, the rest must stay clear
+    private final long tail;
 
-    private static final int ROWS = 9;
-    private static final int COLS = 9;
-    private static final int MINES = 10;
+    // One bit per cell, index = r * cols + c
+    private final long[] mines;
+    private final long[] seen;
+    private final long[] flags;
+    private final byte[] adjs;
 
-    private Cell[][] grid;
+    // Safe cells not revealed yet, the board is cleared when it hits zero
+    private int hidden;
+    private int flagCount;
+    private boolean exploded;
+    private boolean placed;
+
+    // Candidate cells for placement, or their ranks for prepare(), kept between resets
+    private int[] order;
+    // Ranks among the candidates of the mines `seed` draws from `drawnFrom`
+    // of them, made ahead of the first click by prepare(), -1 for none
+    private int[] drawn;
+    private int drawnFrom = -1;
+
+    // Cells touched by the last move, also used as the flood fill queue
+    private final CellBuffer changed = new CellBuffer();
 
     public Board() {
+        this(Config.BEGINNER);
+    }
+
+    public Board(Config config) {
+        this(config, ThreadLocalRandom.current().nextLong());
+    }
+
+    // The same seed and first click always give the same board
+    public Board(Config config, long seed) {
+        this.config = config;
+        this.seed = seed;
+        rows = config.rows;
+        cols = config.cols;
+        size = rows * cols;
+        words = (size + 63) >>> 6;
+        tail = size % 64 == 0 ? -1L : (1L << size) - 1;
+        mines = new long[words];
+        seen = new long[words];
+        flags = new long[words];
+        adjs = new byte[size];
         initBoard();
     }
 
+    // A copy for another thread to read while this one plays on, without
+    // the placement scratch or the last move
+    public Board snapshot() {
+        return new Board(this);
+    }
+
+    private Board(Board b) {
+        config = b.config;
+        seed = b.seed;
+        rows = b.rows;
+        cols = b.cols;
+        size = b.size;
+        words = b.words;
+        tail = b.tail;
+        mines = b.mines.clone();
+        seen = b.seen.clone();
+        flags = b.flags.clone();
+        adjs = b.adjs.clone();
+        hidden = b.hidden;
+        flagCount = b.flagCount;
+        exploded = b.exploded;
+        placed = b.placed;
+    }
+
     private void initBoard() {
-        isInit = false;
-        grid = new Cell[ROWS][COLS];
+        hidden = size - config.mines;
+        flagCount = 0;
+        exploded = false;
+        placed = false;
+        drawnFrom = -1;
+        changed.clear();
         initCells();
-        initMines();
-        calAdjs();
     }
 
     private void initCells() {
-        for (int i = 0; i < ROWS; i++)
-            for (int j = 0; j < COLS; j++)
-                grid[i][j] = new Cell();
-    }
-
-    private void initMines() {
-        Random rnd = new Random();
-        int placed = 0;
-        while (placed < MINES) {
-            int r = rnd.nextInt(ROWS), c = rnd.nextInt(COLS);
-            if (!getCell(r, c).isMine) {
-                getCell(r, c).isMine = true;
-                placed++;
-            }
+        Arrays.fill(mines, 0L);
+        Arrays.fill(seen, 0L);
+        Arrays.fill(flags, 0L);
+        Arrays.fill(adjs, (byte) 0);
+    }
+
+    // Places every mine outside the 3x3 block around (r, c), or outside the
+    // clicked cell alone when the board is too dense to spare the block
+    public void place(int r, int c) {
+        if (placed) throw new IllegalStateException("Mines already placed");
+        if (!inBounds(r, c)) throw new IndexOutOfBoundsException(r + "," + c);
+        int span = 0;
+        for (int nr = r - 1; nr <= r + 1; nr++)
+            for (int nc = c - 1; nc <= c + 1; nc++)
+                if (inBounds(nr, nc)) span++;
+        int reach = size - span >= config.mines ? 1 : 0;
+        if (drawnFrom == size - (reach == 1 ? span : 1)) {
+            placeDrawn(r, c, reach);
+            return;
         }
+
+        if (order == null) order = new int[size];
+        int n = 0;
+        for (int rr = 0, i = 0; rr < rows; rr++)
+            for (int cc = 0; cc < cols; cc++, i++)
+                if (Math.abs(rr - r) > reach || Math.abs(cc - c) > reach) order[n++] = i;
+
+        // Partial Fisher-Yates: only the first `mines` slots get shuffled
+        SplittableRandom rnd = new SplittableRandom(seed);
+        for (int k = 0; k < config.mines; k++) {
+            int j = k + rnd.nextInt(n - k);
+            int i = order[j];
+            order[j] = order[k];
+            order[k] = i;
+            addMine(i);
+        }
+        placed = true;
     }
 
-    private void calAdjs() {
-        for (int i = 0; i < ROWS; i++) {
-            for (int j = 0; j < COLS; j++) {
-                if (!getCell(i, j).isMine) {
-                    int count = 0;
-                    for (int dr = -1; dr <=1; dr++) {
-                        for (int dc = -1; dc <= 1; dc++) {
-                            int nr = i + dr, nc = j + dc;
-                            if (inBounds(nr, nc) && getCell(nr, nc).isMine) count++;
-                        }
-                    }
-                    getCell(i, j).adjMines = count;
-                }
+    // The shuffle only ever looks at how many candidates there are, so it
+    // can run before the click on ranks 0..n-1. The candidates are every cell
+    // but the spared ones in index order, the rank-th of them is found by
+    // stepping over the spared cells below it. Ranks come sorted, so that is
+    // one pass and the neighbour counts are written front to back.
+    private void placeDrawn(int r, int c, int reach) {
+        int[] spared = new int[9];
+        int m = 0;
+        for (int nr = r - reach; nr <= r + reach; nr++)
+            for (int nc = c - reach; nc <= c + reach; nc++)
+                if (inBounds(nr, nc)) spared[m++] = nr * cols + nc;
+        int e = 0;
+        for (int k = 0; k < config.mines; k++) {
+            int i = drawn[k] + e;
+            while (e < m && i >= spared[e]) {
+                e++;
+                i++;
             }
+            addMine(i);
         }
+        drawnFrom = -1;
+        placed = true;
     }
 
-    private boolean inBounds(int r, int c) {
-        return r >= 0 && r < ROWS && c >= 0 && c < COLS;
+    // Draws the mines for a first click away from the edges, which is the
+    // slow part of placing them. Other clicks still place the usual way,
+    // either way the same seed and click give the same board.
+    public void prepare() {
+        if (placed) throw new IllegalStateException("Mines already placed");
+        int r = rows / 2, c = cols / 2, span = 0;
+        for (int nr = r - 1; nr <= r + 1; nr++)
+            for (int nc = c - 1; nc <= c + 1; nc++)
+                if (inBounds(nr, nc)) span++;
+        int n = size - (size - span >= config.mines ? span : 1);
+        if (order == null) order = new int[size];
+        int[] ranks = order;
+        for (int k = 0; k < n; k++) ranks[k] = k;
+        if (drawn == null || drawn.length != config.mines) drawn = new int[config.mines];
+        SplittableRandom rnd = new SplittableRandom(seed);
+        for (int k = 0; k < config.mines; k++) {
+            int j = k + rnd.nextInt(n - k);
+            drawn[k] = ranks[j];
+            ranks[j] = ranks[k];
+        }
+        // Which mine comes first makes no difference to the board
+        Arrays.sort(drawn);
+        drawnFrom = n;
     }
 
-    public boolean isEmpty(int r, int c) {
-        Cell cell = getCell(r, c);
-        return cell.adjMines == 0 && !cell.isMine;
+    private void addMine(int i) {
+        set(mines, i);
+        int r = i / cols, c = i % cols;
+        for (int nr = r - 1; nr <= r + 1; nr++)
+            for (int nc = c - 1; nc <= c + 1; nc++)
+                if (inBounds(nr, nc)) adjs[nr * cols + nc]++;
     }
 
-    public boolean reveal(int r, int c) {
-        isInit = true;
-        if (!inBounds(r, c)) return false;
-        Cell cell = getCell(r, c);
-        if (cell.isSeen || cell.isFlag) return false;
+    private boolean inBounds(int r, int c) {
+        return r >= 0 && r < rows && c >= 0 && c < cols;
+    }
 
-        cell.isSeen = true;
+    private static boolean get(long[] bits, int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
 
-        if (cell.isMine) return true;
+    private static void set(long[] bits, int i) {
+        bits[i >>> 6] |= 1L << i;
+    }
 
-        if (cell.adjMines == 0)
-            for (int dr = -1; dr <= 1; dr++)
-                for (int dc = -1; dc <= 1; dc++)
-                    if (dr != 0 || dc != 0)
-                        reveal (r + dr, c + dc);
+    public boolean isEmpty(int r, int c) {
+        int i = r * cols + c;
+        return adjs[i] == 0 && !get(mines, i);
+    }
 
-        return false;
+    public boolean reveal(int r, int c) {
+        changed.clear();
+        if (!inBounds(r, c)) return false;
+        int i = r * cols + c;
+        // Checked before placing, the safe area belongs around the cell that really opens
+        if (get(seen, i) || get(flags, i)) return false;
+        if (!placed) place(r, c);
+        push(i);
+        return open();
     }
 
     public boolean flag(int r, int c) {
+        changed.clear();
         if (!inBounds(r, c)) return false;
-        Cell cell = getCell(r, c);
-        if (cell.isSeen) return false;
-        cell.isFlag = !cell.isFlag;
+        int i = r * cols + c;
+        if (get(seen, i)) return false;
+        flags[i >>> 6] ^= 1L << i;
+        flagCount += get(flags, i) ? 1 : -1;
+        changed.add(i);
         return true;
     }
 
     public boolean expand(int r, int c) {
+        changed.clear();
         if (!inBounds(r, c)) return false;
-        Cell cell = getCell(r, c);
-        if (!cell.isSeen || cell.isMine || cell.adjMines == 0) return false;
+        int i = r * cols + c;
+        if (!get(seen, i) || get(mines, i) || adjs[i] == 0) return false;
+        pushAround(r, c);
+        open();
+        return true;
+    }
+
+    private void push(int i) {
+        if (get(seen, i) || get(flags, i)) return;
+        set(seen, i);
+        if (get(mines, i)) exploded = true;
+        else hidden--;
+        changed.add(i);
+    }
+
+    private void pushAround(int r, int c) {
         for (int dr = -1; dr <= 1; dr++)
             for (int dc = -1; dc <= 1; dc++)
-                if ((dr != 0 || dc != 0) && !cell.isFlag)
-                    reveal (r + dr, c + dc);
-        return true;
+                if ((dr != 0 || dc != 0) && inBounds(r + dr, c + dc))
+                    push((r + dr) * cols + c + dc);
     }
 
-    public boolean isCleared() {
-        for (int r = 0; r < ROWS; r++) {
-            for (int c = 0; c < COLS; c++) {
-                Cell cell = getCell(r, c);
-                if (!cell.isMine && !cell.isSeen) return false;
-            }
+    // Breadth-first over the changed buffer, every cell is queued at most once
+    private boolean open() {
+        boolean hit = false;
+        for (int head = 0; head < changed.size(); head++) {
+            int i = changed.get(head);
+            if (get(mines, i)) hit = true;
+            else if (adjs[i] == 0) pushAround(i / cols, i % cols);
         }
-        return true;
+        return hit;
+    }
+
+    public boolean isPlaced() {
+        return placed;
+    }
+
+    public boolean isExploded() {
+        return exploded;
+    }
+
+    public CellBuffer getChanges() {
+        return changed;
+    }
+
+    public boolean isCleared() {
+        return hidden == 0;
     }
 
     public void revealAll() {
-        for (int r = 0; r < ROWS; r++)
-            for (int c = 0; c < COLS; c++)
-                getCell(r, c).isSeen = true;
+        Arrays.fill(seen, -1L);
+        seen[words - 1] = tail;
+        hidden = 0;
+        changed.clear();
     }
 
     public void reset() {
+        reset(ThreadLocalRandom.current().nextLong());
+    }
+
+    public void reset(long seed) {
+        this.seed = seed;
         initBoard();
     }
 
+    public long getSeed() {
+        return seed;
+    }
+
+    public Config getConfig() {
+        return config;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getRemainingMines() {
+        return config.mines - flagCount;
+    }
+
+    // Allocation free reads for code that scans many cells
+    public boolean isMine(int i) {
+        return get(mines, i);
+    }
+
+    public boolean isSeen(int i) {
+        return get(seen, i);
+    }
+
+    public boolean isFlagged(int i) {
+        return get(flags, i);
+    }
+
+    // Mines in the 3x3 block around the cell, the cell itself included, so
+    // one more than the neighbours on a mine. Only safe cells show a number.
+    public int getAdjacent(int i) {
+        return adjs[i];
+    }
+
     public Cell getCell (int r, int c) {
         if (!inBounds(r, c)) return null;
-        return grid[r][c];
+        return getCell(r * cols + c);
+    }
+
+    // The count here leaves the cell itself out, mine or not
+    public Cell getCell(int i) {
+        boolean mine = get(mines, i);
+        return new Cell(mine, get(seen, i), get(flags, i), adjs[i] - (mine ? 1 : 0));
     }
 }
@@ -1,8 +1,17 @@
 package com.yifen9.jiraiboxsweeper.model;
 
+// Read-only snapshot of one square, the state itself lives in Board
 public class Cell {
-    public boolean isMine = false;
-    public boolean isSeen = false;
-    public boolean isFlag = false;
-    public int adjMines = 0;
+    public final boolean isMine;
+    public final boolean isSeen;
+    public final boolean isFlag;
+    // Mines among the up to eight neighbours, never counting this cell
+    public final int adjMines;
+
+    public Cell(boolean isMine, boolean isSeen, boolean isFlag, int adjMines) {
+        this.isMine = isMine;
+        this.isSeen = isSeen;
+        this.isFlag = isFlag;
+        this.adjMines = adjMines;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,43 @@
+package com.yifen9.jiraiboxsweeper.model;
+
+import java.util.Arrays;
+
+// Growable list of cell indices, reused between moves to avoid boxing
+public class CellBuffer {
+    private int[] data;
+    private int size;
+
+    public CellBuffer() {
+        this(64);
+    }
+
+    public CellBuffer(int capacity) {
+        data = new int[Math.max(capacity, 1)];
+    }
+
+    public void add(int i) {
+        if (size == data.length) data = Arrays.copyOf(data, size * 2);
+        data[size++] = i;
+    }
+
+    public int get(int k) {
+        if (k >= size) throw new IndexOutOfBoundsException(k);
+        return data[k];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+}
@@ -0,0 +1,71 @@
+package com.yifen9.jiraiboxsweeper.model;
+
+public class Config {
+    public static final Config BEGINNER = new Config("Beginner", 9, 9, 10);
+    public static final Config INTERMEDIATE = new Config("Intermediate", 16, 16, 40);
+    public static final Config EXPERT = new Config("Expert", 16, 30, 99);
+    public static final Config HUGE = new Config("Huge", 2000, 2000, 640000);
+
+    public final String name;
+    public final int rows;
+    public final int cols;
+    public final int mines;
+
+    public Config(int rows, int cols, int mines) {
+        this(cols + "x" + rows + "/" + mines, rows, cols, mines);
+    }
+
+    private Config(String name, int rows, int cols, int mines) {
+        if (rows < 1 || cols < 1 || (long) rows * cols > Integer.MAX_VALUE - 63)
+            throw new IllegalArgumentException("Bad board size " + rows + "x" + cols);
+        if (mines < 0 || mines >= rows * cols)
+            throw new IllegalArgumentException("Bad mine count " + mines + " for " + rows + "x" + cols);
+        this.name = name;
+        this.rows = rows;
+        this.cols = cols;
+        this.mines = mines;
+    }
+
+    // Stable id for storage paths, presets and custom boards of the same shape share it
+    public String key() {
+        return rows + "x" + cols + "x" + mines;
+    }
+
+    // Back from key(), a matching preset keeps its name
+    public static Config fromKey(String key) {
+        String[] parts = key.split("x");
+        if (parts.length != 3) throw new IllegalArgumentException("Level is <rows>x<cols>x<mines>: " + key);
+        Config config = new Config(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+        for (Config p : presets())
+            if (p.equals(config)) return p;
+        return config;
+    }
+
+    // A preset name or a key
+    public static Config parse(String s) {
+        for (Config p : presets())
+            if (p.name.equalsIgnoreCase(s)) return p;
+        return fromKey(s);
+    }
+
+    public static Config[] presets() {
+        return new Config[] {BEGINNER, INTERMEDIATE, EXPERT, HUGE};
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Config)) return false;
+        Config other = (Config) o;
+        return rows == other.rows && cols == other.cols && mines == other.mines;
+    }
+
+    @Override
+    public int hashCode() {
+        return (rows * 31 + cols) * 31 + mines;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,146 @@
+package com.yifen9.jiraiboxsweeper.model;
+
+import java.util.Arrays;
+
+// Order-statistic treap over times, stored in parallel arrays instead of node objects.
+// Equal times share a node and a rank, so rank(t) is one plus the count of faster times.
+public class RankTree {
+    private static final int NIL = 0;
+
+    private long[] keys = new long[16];
+    private int[] counts = new int[16];
+    private int[] sizes = new int[16];
+    private int[] left = new int[16];
+    private int[] right = new int[16];
+    private int[] prios = new int[16];
+    private int nodes = 1;
+    private int root = NIL;
+    private int rnd = 0x2545F491;
+
+    public void add(long key) {
+        root = insert(root, key);
+    }
+
+    // Drops one copy of key, false if there was none. The slot of a node that
+    // goes away is only reused after clear().
+    public boolean remove(long key) {
+        int before = size();
+        root = delete(root, key);
+        return size() < before;
+    }
+
+    public int rank(long key) {
+        return countLess(key) + 1;
+    }
+
+    public int countLess(long key) {
+        int less = 0;
+        for (int t = root; t != NIL; ) {
+            if (key <= keys[t]) {
+                t = left[t];
+            } else {
+                less += sizes[left[t]] + counts[t];
+                t = right[t];
+            }
+        }
+        return less;
+    }
+
+    public int size() {
+        return sizes[root];
+    }
+
+    public void clear() {
+        nodes = 1;
+        root = NIL;
+    }
+
+    private int insert(int t, long key) {
+        if (t == NIL) return newNode(key);
+        if (key == keys[t]) {
+            counts[t]++;
+        } else if (key < keys[t]) {
+            // Assign after the call, it may have swapped the arrays out
+            int child = insert(left[t], key);
+            left[t] = child;
+            if (prios[child] > prios[t]) t = rotateRight(t);
+        } else {
+            int child = insert(right[t], key);
+            right[t] = child;
+            if (prios[child] > prios[t]) t = rotateLeft(t);
+        }
+        update(t);
+        return t;
+    }
+
+    // A node down to its last copy is rotated below its higher priority child
+    // until one side is empty, then spliced out
+    private int delete(int t, long key) {
+        if (t == NIL) return NIL;
+        if (key < keys[t]) {
+            left[t] = delete(left[t], key);
+        } else if (key > keys[t]) {
+            right[t] = delete(right[t], key);
+        } else if (counts[t] > 1) {
+            counts[t]--;
+        } else if (left[t] == NIL) {
+            return right[t];
+        } else if (right[t] == NIL) {
+            return left[t];
+        } else if (prios[left[t]] > prios[right[t]]) {
+            t = rotateRight(t);
+            right[t] = delete(right[t], key);
+        } else {
+            t = rotateLeft(t);
+            left[t] = delete(left[t], key);
+        }
+        update(t);
+        return t;
+    }
+
+    private int rotateRight(int t) {
+        int l = left[t];
+        left[t] = right[l];
+        right[l] = t;
+        update(t);
+        return l;
+    }
+
+    private int rotateLeft(int t) {
+        int r = right[t];
+        right[t] = left[r];
+        left[r] = t;
+        update(t);
+        return r;
+    }
+
+    private void update(int t) {
+        sizes[t] = sizes[left[t]] + sizes[right[t]] + counts[t];
+    }
+
+    private int newNode(long key) {
+        if (nodes == keys.length) grow();
+        int t = nodes++;
+        // xorshift is plenty for heap priorities
+        rnd ^= rnd << 13;
+        rnd ^= rnd >>> 17;
+        rnd ^= rnd << 5;
+        keys[t] = key;
+        counts[t] = 1;
+        sizes[t] = 1;
+        left[t] = NIL;
+        right[t] = NIL;
+        prios[t] = rnd;
+        return t;
+    }
+
+    private void grow() {
+        int n = keys.length * 2;
+        keys = Arrays.copyOf(keys, n);
+        counts = Arrays.copyOf(counts, n);
+        sizes = Arrays.copyOf(sizes, n);
+        left = Arrays.copyOf(left, n);
+        right = Arrays.copyOf(right, n);
+        prios = Arrays.copyOf(prios, n);
+    }
+}
@@ -0,0 +1,352 @@
+package com.yifen9.jiraiboxsweeper.model;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+// A board without edges. The plane is cut into 64x64 chunks, each generated
+// from the world seed and its own coordinates the first time anything looks
+// at it, so memory follows the explored area and not the size of the plane.
+// The most recently used chunks stay decoded. Past that, chunks the player
+// changed are packed down to their seen and flag bits, or to nothing at all
+// once every safe cell in them is open, and the rest are dropped since they
+// come back the same from the seed.
+public class World {
+    public static final int CHUNK_BITS = 6;
+    public static final int CHUNK = 1 << CHUNK_BITS;
+    private static final int CELLS = CHUNK * CHUNK;
+    private static final int WORDS = CELLS / 64;
+    private static final int HOT_CHUNKS = 256;
+    // Below this the openings can grow without end
+    public static final double MIN_DENSITY = 0.12;
+    public static final double MAX_DENSITY = 0.5;
+
+    private final long seed;
+    private final int minesPerChunk;
+    private final int hotLimit;
+
+    // Decoded chunks, least recently used first
+    private final LinkedHashMap<Long, Chunk> hot = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<Long, Packed> cold = new HashMap<>();
+    private Chunk last;
+    // Candidate cells for placement, kept between chunks
+    private final int[] order = new int[CELLS];
+
+    private boolean exploded;
+    private long opened;
+    private int flagCount;
+
+    // Cells touched by the last move as x, y pairs, also the flood fill queue
+    private final CellBuffer changedX = new CellBuffer(), changedY = new CellBuffer();
+
+    private static class Chunk {
+        final int cx, cy;
+        final long[] mines = new long[WORDS];
+        // Null until the player opens or flags something here
+        long[] seen, flags;
+        // Mines in each cell's 3x3 block, counted when first asked for
+        byte[] adjs;
+        int safeOpened;
+
+        Chunk(int cx, int cy) {
+            this.cx = cx;
+            this.cy = cy;
+        }
+    }
+
+    // A touched chunk off the hot list. Null seen means every safe cell is
+    // open, null flags means none are set, so a finished chunk costs nothing.
+    private static class Packed {
+        static final Packed RESOLVED = new Packed(null, null);
+
+        final long[] seen, flags;
+
+        Packed(long[] seen, long[] flags) {
+            this.seen = seen;
+            this.flags = flags;
+        }
+    }
+
+    public World(long seed, double density) {
+        this(seed, density, HOT_CHUNKS);
+    }
+
+    World(long seed, double density, int hotLimit) {
+        if (density < MIN_DENSITY || density > MAX_DENSITY)
+            throw new IllegalArgumentException("Density must be between " + MIN_DENSITY + " and " + MAX_DENSITY);
+        this.seed = seed;
+        this.hotLimit = hotLimit;
+        minesPerChunk = (int) Math.round(CELLS * density);
+    }
+
+    private static long key(int cx, int cy) {
+        return (long) cx << 32 | (cy & 0xffffffffL);
+    }
+
+    private static int index(int x, int y) {
+        return (y & (CHUNK - 1)) << CHUNK_BITS | (x & (CHUNK - 1));
+    }
+
+    private static boolean get(long[] bits, int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    // The chunk holding (x, y), generated if needed. A chunk nobody touched
+    // is not made up just to be read, `create` false returns null for it.
+    private Chunk chunk(int x, int y, boolean create) {
+        int cx = x >> CHUNK_BITS, cy = y >> CHUNK_BITS;
+        if (last != null && last.cx == cx && last.cy == cy) return last;
+        long key = key(cx, cy);
+        Chunk ch = hot.get(key);
+        if (ch == null) {
+            Packed packed = cold.remove(key);
+            if (packed == null && !create) return null;
+            ch = generate(cx, cy);
+            if (packed != null) unpack(ch, packed);
+            hot.put(key, ch);
+        }
+        last = ch;
+        return ch;
+    }
+
+    // Partial Fisher-Yates over the chunk, the 3x3 block at the origin is
+    // kept clear so the first click of a world is always an opening
+    private Chunk generate(int cx, int cy) {
+        Chunk ch = new Chunk(cx, cy);
+        SplittableRandom rnd = new SplittableRandom(seed ^ cx * 0x9E3779B97F4A7C15L ^ cy * 0xC2B2AE3D27D4EB4FL);
+        int n = 0;
+        for (int i = 0; i < CELLS; i++) {
+            int x = cx * CHUNK + (i & (CHUNK - 1)), y = cy * CHUNK + (i >>> CHUNK_BITS);
+            if (Math.abs(x) > 1 || Math.abs(y) > 1) order[n++] = i;
+        }
+        for (int k = 0; k < minesPerChunk; k++) {
+            int j = k + rnd.nextInt(n - k);
+            int i = order[j];
+            order[j] = order[k];
+            order[k] = i;
+            ch.mines[i >>> 6] |= 1L << i;
+        }
+        return ch;
+    }
+
+    private void unpack(Chunk ch, Packed packed) {
+        ch.seen = packed.seen;
+        if (ch.seen == null) {
+            ch.seen = new long[WORDS];
+            for (int w = 0; w < WORDS; w++) ch.seen[w] = ~ch.mines[w];
+        }
+        ch.flags = packed.flags != null ? packed.flags : new long[WORDS];
+        for (int w = 0; w < WORDS; w++) ch.safeOpened += Long.bitCount(ch.seen[w] & ~ch.mines[w]);
+    }
+
+    private Packed pack(Chunk ch) {
+        boolean anyFlag = false;
+        for (long w : ch.flags) anyFlag |= w != 0;
+        long[] flags = anyFlag ? ch.flags : null;
+        if (ch.safeOpened == CELLS - minesPerChunk && !anySeenMine(ch))
+            return flags == null ? Packed.RESOLVED : new Packed(null, flags);
+        return new Packed(ch.seen, flags);
+    }
+
+    private static boolean anySeenMine(Chunk ch) {
+        for (int w = 0; w < WORDS; w++) if ((ch.seen[w] & ch.mines[w]) != 0) return true;
+        return false;
+    }
+
+    // Runs after every move, never during one, so no chunk a move holds goes away
+    private void trim() {
+        if (hot.size() <= hotLimit) return;
+        // The `last` shortcut in chunk() skips the access order, so bring
+        // that chunk to the recent end before picking what to drop
+        if (last != null) hot.get(key(last.cx, last.cy));
+        Iterator<Map.Entry<Long, Chunk>> it = hot.entrySet().iterator();
+        while (hot.size() > hotLimit && it.hasNext()) {
+            Map.Entry<Long, Chunk> e = it.next();
+            Chunk ch = e.getValue();
+            it.remove();
+            if (ch.seen != null) cold.put(e.getKey(), pack(ch));
+            if (ch == last) last = null;
+        }
+    }
+
+    private static void touch(Chunk ch) {
+        if (ch.seen != null) return;
+        ch.seen = new long[WORDS];
+        ch.flags = new long[WORDS];
+    }
+
+    public boolean reveal(int x, int y) {
+        changedX.clear();
+        changedY.clear();
+        push(x, y);
+        boolean hit = open();
+        trim();
+        return hit;
+    }
+
+    public boolean flag(int x, int y) {
+        changedX.clear();
+        changedY.clear();
+        Chunk ch = chunk(x, y, true);
+        touch(ch);
+        int i = index(x, y);
+        boolean ok = !get(ch.seen, i);
+        if (ok) {
+            ch.flags[i >>> 6] ^= 1L << i;
+            flagCount += get(ch.flags, i) ? 1 : -1;
+            changedX.add(x);
+            changedY.add(y);
+        }
+        trim();
+        return ok;
+    }
+
+    // Opens every unflagged neighbour of an open number
+    public boolean expand(int x, int y) {
+        changedX.clear();
+        changedY.clear();
+        Chunk ch = chunk(x, y, false);
+        int i = index(x, y);
+        boolean ok = ch != null && ch.seen != null && get(ch.seen, i) && !get(ch.mines, i) && adjacent(ch, i) > 0;
+        if (ok) {
+            pushAround(x, y);
+            open();
+        }
+        trim();
+        return ok;
+    }
+
+    private void push(int x, int y) {
+        Chunk ch = chunk(x, y, true);
+        touch(ch);
+        int i = index(x, y);
+        if (get(ch.seen, i) || get(ch.flags, i)) return;
+        ch.seen[i >>> 6] |= 1L << i;
+        if (get(ch.mines, i)) {
+            exploded = true;
+        } else {
+            ch.safeOpened++;
+            opened++;
+        }
+        changedX.add(x);
+        changedY.add(y);
+    }
+
+    private void pushAround(int x, int y) {
+        for (int dy = -1; dy <= 1; dy++)
+            for (int dx = -1; dx <= 1; dx++)
+                if (dx != 0 || dy != 0) push(x + dx, y + dy);
+    }
+
+    // Breadth-first over the changed cells, across chunk edges as it goes
+    private boolean open() {
+        boolean hit = false;
+        for (int head = 0; head < changedX.size(); head++) {
+            int x = changedX.get(head), y = changedY.get(head);
+            Chunk ch = chunk(x, y, true);
+            int i = index(x, y);
+            if (get(ch.mines, i)) hit = true;
+            else if (adjacent(ch, i) == 0) pushAround(x, y);
+        }
+        return hit;
+    }
+
+    // Reads trim too, panning around the world must not keep it all decoded
+    public boolean isMine(int x, int y) {
+        boolean mine = get(chunk(x, y, true).mines, index(x, y));
+        trim();
+        return mine;
+    }
+
+    public boolean isSeen(int x, int y) {
+        Chunk ch = chunk(x, y, false);
+        boolean seen = ch != null && ch.seen != null && get(ch.seen, index(x, y));
+        trim();
+        return seen;
+    }
+
+    public boolean isFlagged(int x, int y) {
+        Chunk ch = chunk(x, y, false);
+        boolean flagged = ch != null && ch.flags != null && get(ch.flags, index(x, y));
+        trim();
+        return flagged;
+    }
+
+    // Mines in the 3x3 block around the cell, the cell itself included
+    public int getAdjacent(int x, int y) {
+        int n = adjacent(chunk(x, y, true), index(x, y));
+        trim();
+        return n;
+    }
+
+    private int adjacent(Chunk ch, int i) {
+        if (ch.adjs == null) ch.adjs = count(ch);
+        return ch.adjs[i];
+    }
+
+    // Inner cells read their own chunk, the rim also the eight around it
+    private byte[] count(Chunk ch) {
+        byte[] adjs = new byte[CELLS];
+        int x0 = ch.cx * CHUNK, y0 = ch.cy * CHUNK;
+        for (int i = 0; i < CELLS; i++) {
+            int lx = i & (CHUNK - 1), ly = i >>> CHUNK_BITS;
+            int n = 0;
+            if (lx > 0 && ly > 0 && lx < CHUNK - 1 && ly < CHUNK - 1) {
+                for (int dy = -1; dy <= 1; dy++)
+                    for (int dx = -1; dx <= 1; dx++)
+                        if (get(ch.mines, i + dy * CHUNK + dx)) n++;
+            } else {
+                for (int dy = -1; dy <= 1; dy++)
+                    for (int dx = -1; dx <= 1; dx++)
+                        if (get(chunk(x0 + lx + dx, y0 + ly + dy, true).mines, index(x0 + lx + dx, y0 + ly + dy))) n++;
+            }
+            adjs[i] = (byte) n;
+        }
+        return adjs;
+    }
+
+    public CellBuffer getChangedX() {
+        return changedX;
+    }
+
+    public CellBuffer getChangedY() {
+        return changedY;
+    }
+
+    public boolean isExploded() {
+        return exploded;
+    }
+
+    // Safe cells opened so far, the score of an endless game
+    public long getOpened() {
+        return opened;
+    }
+
+    public int getFlagCount() {
+        return flagCount;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getHotChunks() {
+        return hot.size();
+    }
+
+    public int getPackedChunks() {
+        return cold.size();
+    }
+
+    // Rough bytes held by cell data, hot and packed
+    public long getFootprint() {
+        long bytes = 0;
+        for (Chunk ch : hot.values())
+            bytes += WORDS * 8L * (ch.seen != null ? 3 : 1) + (ch.adjs != null ? CELLS : 0);
+        for (Packed p : cold.values())
+            bytes += (p.seen != null ? WORDS * 8L : 0) + (p.flags != null ? WORDS * 8L : 0);
+        return bytes;
+    }
+}
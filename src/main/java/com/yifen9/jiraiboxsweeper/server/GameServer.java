@@ -0,0 +1,165 @@
+package com.yifen9.jiraiboxsweeper.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.yifen9.jiraiboxsweeper.model.Config;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Hosts many games over plain HTTP, every request on its own virtual thread:
+//   POST   /games?level=<preset or rows x cols x mines>[&seed=]  new game
+//   POST   /games/<id>/reveal|flag|chord?r=&c=                   cells it changed
+//   GET    /games/<id>                                            every visible cell
+//   DELETE /games/<id>
+//   GET    /stats
+public class GameServer {
+    private static final int SHARDS = 64;
+    private static final int MAX_GAMES = 200_000;
+    // Keeps one client from taking the heap with a single huge board
+    private static final int MAX_CELLS = 100 * 100;
+    private static final long IDLE_NANOS = TimeUnit.MINUTES.toNanos(30);
+    private static final int BACKLOG = 4096;
+    private static final int MAX_CONNECTIONS = 50_000;
+
+    private final Sessions sessions = new Sessions(SHARDS, MAX_GAMES);
+    private final HttpServer http;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "session-sweeper");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Port 0 picks a free one
+    public GameServer(int port) throws IOException {
+        // Headers and body go out in separate writes, with Nagle on every
+        // request on a kept alive connection waits for a delayed ack.
+        // Past 200 idle connections the JDK server closes them after each
+        // response, every player would reconnect for every move.
+        setDefault("sun.net.httpserver.nodelay", "true");
+        setDefault("sun.net.httpserver.maxIdleConnections", String.valueOf(MAX_CONNECTIONS));
+        http = HttpServer.create(new InetSocketAddress("127.0.0.1", port), BACKLOG);
+        http.setExecutor(executor);
+        http.createContext("/games", this::handleGames);
+        http.createContext("/stats", ex -> {
+            if (!ex.getRequestMethod().equals("GET")) send(ex, 405, "{\"error\":\"method\"}");
+            else send(ex, 200, "{\"games\":" + sessions.size() + "}");
+        });
+    }
+
+    // Read once by the JDK server, so only before the first one is created
+    private static void setDefault(String key, String value) {
+        if (System.getProperty(key) == null) System.setProperty(key, value);
+    }
+
+    public void start() {
+        http.start();
+        sweeper.scheduleWithFixedDelay(() -> sessions.evictIdle(System.nanoTime() - IDLE_NANOS), 1, 1, TimeUnit.MINUTES);
+    }
+
+    public void stop() {
+        http.stop(0);
+        sweeper.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    public int getPort() {
+        return http.getAddress().getPort();
+    }
+
+    public Sessions getSessions() {
+        return sessions;
+    }
+
+    private void handleGames(HttpExchange ex) throws IOException {
+        try {
+            String[] path = ex.getRequestURI().getPath().split("/");
+            Map<String, String> query = query(ex.getRequestURI().getRawQuery());
+            String method = ex.getRequestMethod();
+            // path[0] is empty and path[1] is "games"
+            if (path.length == 2) {
+                if (!method.equals("POST")) {
+                    send(ex, 405, "{\"error\":\"method\"}");
+                    return;
+                }
+                Config config = Config.parse(query.getOrDefault("level", "beginner"));
+                if (config.rows * config.cols > MAX_CELLS) throw new IllegalArgumentException("Board over " + MAX_CELLS + " cells");
+                long seed = query.containsKey("seed") ? Long.parseLong(query.get("seed")) : ThreadLocalRandom.current().nextLong();
+                HostedGame game = sessions.create(config, seed);
+                if (game == null) send(ex, 503, "{\"error\":\"full\"}");
+                else send(ex, 201, game.describe());
+                return;
+            }
+            HostedGame game = sessions.get(path[2]);
+            if (game == null) {
+                send(ex, 404, "{\"error\":\"no such game\"}");
+            } else if (path.length == 3 && method.equals("GET")) {
+                send(ex, 200, game.snapshot());
+            } else if (path.length == 3 && method.equals("DELETE")) {
+                sessions.remove(game.id);
+                send(ex, 204, null);
+            } else if (path.length == 4 && method.equals("POST")) {
+                int action = actionOf(path[3]);
+                int r = Integer.parseInt(query.get("r")), c = Integer.parseInt(query.get("c"));
+                send(ex, 200, game.play(action, r, c));
+            } else {
+                send(ex, 405, "{\"error\":\"method\"}");
+            }
+        } catch (IllegalArgumentException e) {
+            // Bad numbers, unknown actions and cells off the board alike
+            send(ex, 400, "{\"error\":" + JSONObject.quote(String.valueOf(e.getMessage())) + "}");
+        }
+    }
+
+    private static int actionOf(String name) {
+        switch (name) {
+            case "reveal": return HostedGame.REVEAL;
+            case "flag": return HostedGame.FLAG_MOVE;
+            case "chord": return HostedGame.CHORD;
+            default: throw new IllegalArgumentException("Unknown action " + name);
+        }
+    }
+
+    private static Map<String, String> query(String raw) {
+        Map<String, String> q = new HashMap<>();
+        if (raw == null) return q;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) q.put(pair.substring(0, eq), pair.substring(eq + 1));
+        }
+        return q;
+    }
+
+    private static void send(HttpExchange ex, int status, String body) throws IOException {
+        if (body == null) {
+            ex.sendResponseHeaders(status, -1);
+            ex.close();
+            return;
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json");
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // serve [port]
+    public static void main(String[] args) throws IOException {
+        GameServer server = new GameServer(args.length > 0 ? Integer.parseInt(args[0]) : 8080);
+        server.start();
+        System.out.println("Serving games on http://127.0.0.1:" + server.getPort() + "/games");
+    }
+}
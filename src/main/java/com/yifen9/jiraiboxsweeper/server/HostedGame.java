@@ -0,0 +1,126 @@
+package com.yifen9.jiraiboxsweeper.server;
+
+import com.yifen9.jiraiboxsweeper.engine.GameListener;
+import com.yifen9.jiraiboxsweeper.engine.GameSession;
+import com.yifen9.jiraiboxsweeper.metrics.Histogram;
+import com.yifen9.jiraiboxsweeper.metrics.Metrics;
+import com.yifen9.jiraiboxsweeper.model.Board;
+import com.yifen9.jiraiboxsweeper.model.CellBuffer;
+import com.yifen9.jiraiboxsweeper.model.Config;
+
+import java.util.BitSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+// One player's game on the server. Requests for it may arrive on any
+// number of threads, the lock lets one through at a time, so the board
+// only ever has a single writer and other games never wait on it.
+public class HostedGame implements GameListener {
+    // Cell codes in responses: 0-8 open with that many neighbours, then mine, hidden, flag
+    public static final int MINE = 9, HIDDEN = 10, FLAG = 11;
+    public static final int REVEAL = 0, FLAG_MOVE = 1, CHORD = 2;
+    // From asking for the lock to the response text, waiting on other requests included
+    private static final Histogram MOVE_TIME = Metrics.timer("server.move");
+
+    final String id;
+    private final GameSession session;
+    // A ReentrantLock and not synchronized, a virtual thread parks on it
+    // without holding on to its carrier
+    private final ReentrantLock lock = new ReentrantLock();
+    private final CellBuffer changed = new CellBuffer();
+    private volatile long lastUsed = System.nanoTime();
+
+    HostedGame(String id, Config config, long seed) {
+        this.id = id;
+        session = new GameSession(new Board(config, seed), System::nanoTime);
+        session.addListener(this);
+    }
+
+    // Plays one move, returns the cells it changed as JSON
+    public String play(int action, int r, int c) {
+        Board board = session.getBoard();
+        if (r < 0 || c < 0 || r >= board.getRows() || c >= board.getCols())
+            throw new IllegalArgumentException("Cell out of range: " + r + "," + c);
+        long t0 = Metrics.start();
+        lock.lock();
+        try {
+            lastUsed = System.nanoTime();
+            changed.clear();
+            switch (action) {
+                case REVEAL: session.reveal(r, c); break;
+                case FLAG_MOVE: session.flag(r, c); break;
+                case CHORD: session.expand(r, c); break;
+                default: throw new IllegalArgumentException("Unknown action " + action);
+            }
+            if (session.getState() == GameSession.State.LOST) {
+                // The rest of the mines come out once the game is lost, every
+                // cell is seen by now so the ones already sent are marked apart
+                BitSet sent = new BitSet(board.getRows() * board.getCols());
+                for (int k = 0; k < changed.size(); k++) sent.set(changed.get(k));
+                for (int i = 0; i < board.getRows() * board.getCols(); i++)
+                    if (board.isMine(i) && !board.isFlagged(i) && !sent.get(i)) changed.add(i);
+            }
+            return write(changed);
+        } finally {
+            lock.unlock();
+            MOVE_TIME.recordSince(t0);
+        }
+    }
+
+    // Every cell the player can see, for a client joining mid game
+    public String snapshot() {
+        lock.lock();
+        try {
+            lastUsed = System.nanoTime();
+            Board board = session.getBoard();
+            changed.clear();
+            for (int i = 0; i < board.getRows() * board.getCols(); i++)
+                if (board.isSeen(i) || board.isFlagged(i)) changed.add(i);
+            return write(changed);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private String write(CellBuffer cells) {
+        Board board = session.getBoard();
+        StringBuilder sb = new StringBuilder(32 + cells.size() * 8);
+        sb.append("{\"state\":\"").append(session.getState())
+          .append("\",\"mines\":").append(board.getRemainingMines())
+          .append(",\"millis\":").append(session.getElapsedMillis())
+          .append(",\"cells\":[");
+        // Flat pairs of cell index and code
+        for (int k = 0; k < cells.size(); k++) {
+            int i = cells.get(k);
+            if (k > 0) sb.append(',');
+            sb.append(i).append(',').append(codeOf(board, i));
+        }
+        return sb.append("]}").toString();
+    }
+
+    private int codeOf(Board board, int i) {
+        if (board.isFlagged(i) && !session.isOver()) return FLAG;
+        if (board.isMine(i)) return board.isSeen(i) || session.isOver() ? MINE : HIDDEN;
+        return board.isSeen(i) ? board.getAdjacent(i) : HIDDEN;
+    }
+
+    public String describe() {
+        Config config = session.getBoard().getConfig();
+        return "{\"id\":\"" + id + "\",\"rows\":" + config.rows + ",\"cols\":" + config.cols
+                + ",\"mines\":" + config.mines + "}";
+    }
+
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    // Runs under the lock, inside play
+    @Override
+    public void onReveal(CellBuffer cells) {
+        for (int k = 0; k < cells.size(); k++) changed.add(cells.get(k));
+    }
+
+    @Override
+    public void onFlag(int index, boolean flagged) {
+        changed.add(index);
+    }
+}
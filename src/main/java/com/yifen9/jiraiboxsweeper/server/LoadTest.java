@@ -0,0 +1,199 @@
+package com.yifen9.jiraiboxsweeper.server;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Many simulated players, one virtual thread each, clicking random hidden
+// cells on their own game with a pause between moves. Without a URL it
+// starts a server in this JVM. Prints the latency of the moves only,
+// creating the games is done before the clock starts.
+public class LoadTest {
+    private static final String LEVEL = "expert";
+    // Games created at once while ramping up, ten thousand connects in one go overflow the backlog
+    private static final int RAMP = 256;
+
+    private final HttpClient client;
+    private final String base;
+    private final long thinkNanos;
+    private final AtomicInteger errors = new AtomicInteger();
+
+    private LoadTest(String base, long thinkMillis, ExecutorService executor) {
+        this.base = base;
+        this.thinkNanos = thinkMillis * 1_000_000;
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(executor).build();
+    }
+
+    private HttpResponse<String> post(String path) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(URI.create(base + path)).POST(HttpRequest.BodyPublishers.noBody()).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void delete(String path) throws IOException, InterruptedException {
+        client.send(HttpRequest.newBuilder(URI.create(base + path)).DELETE().build(), HttpResponse.BodyHandlers.discarding());
+    }
+
+    // One player and the latencies of its moves
+    private class Player {
+        final SplittableRandom rnd;
+        long[] latencies = new long[256];
+        int count;
+        String id;
+        int rows, cols;
+        boolean[] known;
+
+        Player(long seed) {
+            rnd = new SplittableRandom(seed);
+        }
+
+        void newGame() throws IOException, InterruptedException {
+            String body = post("/games?level=" + LEVEL).body();
+            id = field(body, "\"id\":\"", '"');
+            rows = Integer.parseInt(field(body, "\"rows\":", ','));
+            cols = Integer.parseInt(field(body, "\"cols\":", ','));
+            known = new boolean[rows * cols];
+        }
+
+        void play(long until) throws IOException, InterruptedException {
+            // Spread the first moves out so the players do not click in waves
+            if (thinkNanos > 0) pause(rnd.nextLong(thinkNanos), until);
+            while (System.nanoTime() < until) {
+                int i;
+                do i = rnd.nextInt(known.length); while (known[i]);
+                long t0 = System.nanoTime();
+                HttpResponse<String> res = post("/games/" + id + "/reveal?r=" + i / cols + "&c=" + i % cols);
+                long t = System.nanoTime() - t0;
+                if (count == latencies.length) latencies = Arrays.copyOf(latencies, count * 2);
+                latencies[count++] = t;
+                if (res.statusCode() != 200) {
+                    errors.incrementAndGet();
+                    continue;
+                }
+                String body = res.body();
+                if (!body.startsWith("{\"state\":\"PLAYING\"")) {
+                    // Won or lost, the next game starts right away
+                    delete("/games/" + id);
+                    newGame();
+                } else {
+                    markCells(body);
+                }
+                if (thinkNanos > 0) pause(thinkNanos / 2 + rnd.nextLong(thinkNanos), until);
+            }
+        }
+
+        void markCells(String body) {
+            int k = body.indexOf("\"cells\":[") + 9;
+            boolean index = true, digits = false;
+            int v = 0;
+            for (; k < body.length(); k++) {
+                char ch = body.charAt(k);
+                if (ch >= '0' && ch <= '9') {
+                    v = v * 10 + ch - '0';
+                    digits = true;
+                    continue;
+                }
+                if (!digits) break;
+                if (index) known[v] = true;
+                index = !index;
+                v = 0;
+                digits = false;
+                if (ch == ']') break;
+            }
+        }
+    }
+
+    // Never past the end of the run
+    private static void pause(long nanos, long until) throws InterruptedException {
+        long t = Math.min(nanos, until - System.nanoTime());
+        if (t > 0) Thread.sleep(t / 1_000_000);
+    }
+
+    private static String field(String body, String name, char end) {
+        int from = body.indexOf(name) + name.length();
+        return body.substring(from, body.indexOf(end, from));
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    // loadtest [sessions] [seconds] [think millis] [url]
+    public static void main(String[] args) throws Exception {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        long think = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+        GameServer server = null;
+        String base;
+        if (args.length > 3) {
+            base = args[3];
+        } else {
+            server = new GameServer(0);
+            server.start();
+            base = "http://127.0.0.1:" + server.getPort();
+        }
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        LoadTest test = new LoadTest(base, think, executor);
+        Player[] players = new Player[sessions];
+        Semaphore ramp = new Semaphore(RAMP);
+        CountDownLatch ready = new CountDownLatch(sessions), go = new CountDownLatch(1), done = new CountDownLatch(sessions);
+        long[] until = new long[1];
+        long t0 = System.nanoTime();
+        for (int p = 0; p < sessions; p++) {
+            Player player = players[p] = test.new Player(p);
+            executor.submit(() -> {
+                try {
+                    ramp.acquire();
+                    try {
+                        player.newGame();
+                    } finally {
+                        ramp.release();
+                    }
+                    ready.countDown();
+                    go.await();
+                    player.play(until[0]);
+                } catch (Exception e) {
+                    test.errors.incrementAndGet();
+                    ready.countDown();
+                } finally {
+                    done.countDown();
+                }
+                return null;
+            });
+        }
+        ready.await();
+        System.out.printf("%,d games created in %.2f s%n", sessions, (System.nanoTime() - t0) / 1e9);
+        until[0] = System.nanoTime() + seconds * 1_000_000_000L;
+        long start = System.nanoTime();
+        go.countDown();
+        done.await();
+        double secs = (System.nanoTime() - start) / 1e9;
+
+        int total = 0;
+        for (Player p : players) total += p.count;
+        long[] all = new long[total];
+        int n = 0;
+        for (Player p : players) {
+            System.arraycopy(p.latencies, 0, all, n, p.count);
+            n += p.count;
+        }
+        Arrays.sort(all);
+        System.out.printf("%,d moves in %.1f s, %,.0f moves/s, %d errors, %,d games hosted%n",
+                total, secs, total / secs, test.errors.get(), server != null ? server.getSessions().size() : -1);
+        System.out.printf("latency ms  p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  max %.2f%n",
+                percentile(all, 0.5) / 1e6, percentile(all, 0.9) / 1e6, percentile(all, 0.99) / 1e6,
+                percentile(all, 0.999) / 1e6, percentile(all, 1) / 1e6);
+        executor.shutdownNow();
+        if (server != null) server.stop();
+    }
+}
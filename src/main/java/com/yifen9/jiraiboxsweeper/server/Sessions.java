@@ -0,0 +1,105 @@
+package com.yifen9.jiraiboxsweeper.server;
+
+import com.yifen9.jiraiboxsweeper.model.Config;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Hosted games by id, split into shards that each have their own lock.
+// Lookups on different shards never meet, and a shard is held only for
+// the map operation, never while a move is played.
+public class Sessions {
+    private final Shard[] shards;
+    private final int mask;
+    private final int limit;
+    private final AtomicInteger size = new AtomicInteger();
+
+    private static class Shard {
+        final ReentrantLock lock = new ReentrantLock();
+        final Map<String, HostedGame> games = new HashMap<>();
+    }
+
+    // `shards` is rounded up to a power of two
+    public Sessions(int shards, int limit) {
+        int n = Integer.highestOneBit(Math.max(1, shards - 1)) << 1;
+        this.shards = new Shard[n];
+        for (int k = 0; k < n; k++) this.shards[k] = new Shard();
+        mask = n - 1;
+        this.limit = limit;
+    }
+
+    private Shard shardOf(String id) {
+        int h = id.hashCode();
+        return shards[(h ^ h >>> 16) & mask];
+    }
+
+    // Null once `limit` games are hosted
+    public HostedGame create(Config config, long seed) {
+        if (size.incrementAndGet() > limit) {
+            size.decrementAndGet();
+            return null;
+        }
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        while (true) {
+            HostedGame game = new HostedGame(Long.toHexString(rnd.nextLong() | Long.MIN_VALUE), config, seed);
+            Shard shard = shardOf(game.id);
+            shard.lock.lock();
+            try {
+                if (shard.games.putIfAbsent(game.id, game) == null) return game;
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    public HostedGame get(String id) {
+        Shard shard = shardOf(id);
+        shard.lock.lock();
+        try {
+            return shard.games.get(id);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    public boolean remove(String id) {
+        Shard shard = shardOf(id);
+        shard.lock.lock();
+        try {
+            if (shard.games.remove(id) == null) return false;
+        } finally {
+            shard.lock.unlock();
+        }
+        size.decrementAndGet();
+        return true;
+    }
+
+    // Drops games nobody touched since `cutoffNanos`, one shard at a time
+    public int evictIdle(long cutoffNanos) {
+        int removed = 0;
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                Iterator<HostedGame> it = shard.games.values().iterator();
+                while (it.hasNext()) {
+                    if (it.next().getLastUsed() - cutoffNanos < 0) {
+                        it.remove();
+                        removed++;
+                    }
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        size.addAndGet(-removed);
+        return removed;
+    }
+
+    public int size() {
+        return size.get();
+    }
+}
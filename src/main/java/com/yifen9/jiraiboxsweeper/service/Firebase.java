@@ -1,66 +1,229 @@
 package com.yifen9.jiraiboxsweeper.service;
 
+import com.yifen9.jiraiboxsweeper.engine.MoveLog;
+import com.yifen9.jiraiboxsweeper.metrics.Histogram;
+import com.yifen9.jiraiboxsweeper.metrics.Metrics;
+import com.yifen9.jiraiboxsweeper.model.Config;
+
 import okhttp3.*;
 import org.json.JSONArray;
 import org.json.JSONObject;
+import org.json.JSONTokener;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
+import java.security.SecureRandom;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 public class Firebase {
     private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    private static final String PUSH_CHARS = "-0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz";
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static long lastPushTime;
+    private static final char[] lastRandom = new char[12];
+    // Fastest first, push keys break ties in posting order
+    public static final Comparator<Score> BY_TIME = Comparator.<Score>comparingInt(s -> s.time).thenComparing(s -> s.key);
+
+    // Times in milliseconds, the old /scores node holds whole seconds and is left alone
+    private static final String SCORES = "/scoresMs";
+    // Move logs beside the scores under the same keys, so ranking pages stay small
+    private static final String REPLAYS = "/replaysMs";
+
+    // Whole round trips, failed ones included
+    private static final Histogram FETCH_TIME = Metrics.timer("firebase.fetch");
+    private static final Histogram GET_TIME = Metrics.timer("firebase.get");
+    private static final Histogram PATCH_TIME = Metrics.timer("firebase.patch");
+    private static final Metrics.Counter FAILURES = Metrics.counter("firebase.failures");
+
     private final OkHttpClient client = new OkHttpClient();
     private final String dbUrl;
 
     public Firebase() {
+        this(loadDbUrl());
+    }
+
+    // Lets a local stand-in server take the place of the real database
+    public Firebase(String dbUrl) {
+        this.dbUrl = dbUrl;
+    }
+
+    private static String loadDbUrl() {
         Properties props = new Properties();
-        try (InputStream in = getClass().getClassLoader().getResourceAsStream("firebase.properties")) {
+        try (InputStream in = Firebase.class.getClassLoader().getResourceAsStream("firebase.properties")) {
             props.load(in);
         } catch (IOException e) {
             throw new RuntimeException("Cannot load firebase.properties", e);
         }
-        dbUrl = props.getProperty("firebase.databaseUrl");
+        return props.getProperty("firebase.databaseUrl");
+    }
+
+    // Scores are kept apart per board shape so each level ranks on its own
+    private HttpUrl.Builder scoresUrl(Config config) {
+        return HttpUrl.get(dbUrl + SCORES + "/" + config.key() + ".json").newBuilder();
+    }
+
+    // Same scheme as the database's own push keys: 8 chars of time then 12 random,
+    // bumped within one millisecond, so keys made here still sort by creation
+    public static synchronized String newKey() {
+        long now = System.currentTimeMillis();
+        char[] key = new char[20];
+        long t = now;
+        for (int i = 7; i >= 0; i--) {
+            key[i] = PUSH_CHARS.charAt((int) (t % 64));
+            t /= 64;
+        }
+        if (now != lastPushTime) {
+            for (int i = 0; i < 12; i++) lastRandom[i] = PUSH_CHARS.charAt(RANDOM.nextInt(64));
+        } else {
+            int i = 11;
+            while (i >= 0 && lastRandom[i] == 'z') lastRandom[i--] = '-';
+            if (i >= 0) lastRandom[i] = PUSH_CHARS.charAt(PUSH_CHARS.indexOf(lastRandom[i]) + 1);
+        }
+        lastPushTime = now;
+        System.arraycopy(lastRandom, 0, key, 8, 12);
+        return new String(key);
     }
 
-    public void postScore(String name, int time) throws IOException {
-        JSONObject obj = new JSONObject()
-            .put("name", name)
-            .put("time", time);
-        RequestBody body = RequestBody.create(obj.toString(), JSON);
+    public static JSONObject toJson(Score score) {
+        // Seeds go out as hex strings, JSON numbers cannot hold 64 bits exactly
+        return new JSONObject()
+            .put("name", score.name)
+            .put("time", score.time)
+            .put("seed", Long.toHexString(score.seed));
+    }
+
+    // Writes many scores and their replays in one multi-path PATCH, keys are
+    // chosen by the caller so sending the same batch twice leaves one copy of each
+    public void putScores(List<Outbox.Entry> entries) throws IOException {
+        JSONObject update = new JSONObject();
+        for (Outbox.Entry e : entries) {
+            String path = e.level + "/" + e.score.key;
+            update.put(SCORES.substring(1) + "/" + path, toJson(e.score));
+            if (e.score.replay != null) update.put(REPLAYS.substring(1) + "/" + path, MoveLog.encode(e.score.replay));
+        }
         Request req = new Request.Builder()
-            .url(dbUrl + "/scores.json")
-            .post(body)
+            .url(dbUrl + "/.json")
+            .patch(RequestBody.create(update.toString(), JSON))
             .build();
-        client.newCall(req).execute().close();
+        execute(req);
     }
 
-    public List<Score> fetchAllScores() throws IOException {
-        String url = dbUrl + "/scores.json";
-        Request req = new Request.Builder().url(url).build();
-        try (Response resp = client.newCall(req).execute()) {
+    // One page of the ranking, needs ".indexOn": "time" on the level node.
+    // The REST API filters in order but does not keep that order in the JSON.
+    public int fetchTop(Config config, int fromTime, int limit, ScoreReader.Sink sink) throws IOException {
+        HttpUrl url = scoresUrl(config)
+            .addQueryParameter("orderBy", "\"time\"")
+            .addQueryParameter("startAt", String.valueOf(fromTime))
+            .addQueryParameter("limitToFirst", String.valueOf(limit))
+            .build();
+        return fetch(url, sink);
+    }
+
+    // Push keys sort by creation time, so starting at the newest key we
+    // have returns only that entry and whatever was posted after it
+    public int fetchScoresFrom(Config config, String startKey, ScoreReader.Sink sink) throws IOException {
+        HttpUrl url = scoresUrl(config)
+            .addQueryParameter("orderBy", "\"$key\"")
+            .addQueryParameter("startAt", JSONObject.quote(startKey))
+            .build();
+        return fetch(url, sink);
+    }
+
+    // Every score of a level in one go, for audits
+    public int fetchAll(Config config, ScoreReader.Sink sink) throws IOException {
+        return fetch(scoresUrl(config).build(), sink);
+    }
+
+    // The move log of one score, null if it was posted without one
+    public byte[] fetchReplay(Config config, String key) throws IOException {
+        String body = execute(new Request.Builder().url(dbUrl + REPLAYS + "/" + config.key() + "/" + key + ".json").build());
+        Object v = new JSONTokener(body).nextValue();
+        return v instanceof String ? MoveLog.decode((String) v) : null;
+    }
+
+    public Map<String, byte[]> fetchReplays(Config config) throws IOException {
+        String body = execute(new Request.Builder().url(dbUrl + REPLAYS + "/" + config.key() + ".json").build());
+        Map<String, byte[]> replays = new HashMap<>();
+        Object v = new JSONTokener(body).nextValue();
+        if (v instanceof JSONObject) {
+            JSONObject all = (JSONObject) v;
+            for (String key : all.keySet()) replays.put(key, MoveLog.decode(all.getString(key)));
+        }
+        return replays;
+    }
+
+    public String fetchNewestKey(Config config) throws IOException {
+        HttpUrl url = scoresUrl(config)
+            .addQueryParameter("orderBy", "\"$key\"")
+            .addQueryParameter("limitToLast", "1")
+            .build();
+        String[] key = new String[1];
+        fetch(url, s -> key[0] = s.key);
+        return key[0];
+    }
+
+    // Scores go straight from the socket into the sink
+    private int fetch(HttpUrl url, ScoreReader.Sink sink) throws IOException {
+        long t0 = Metrics.start();
+        try (Response resp = client.newCall(new Request.Builder().url(url).build()).execute()) {
             if (!resp.isSuccessful()) {
-                throw new IOException("HTTP " + resp.code() + ": " + resp.body().string());
+                FAILURES.increment();
+                throw new HttpException(resp.code(), resp.body().string());
             }
-            String body = resp.body().string();
-            JSONObject root = new JSONObject(body);
-            List<Score> list = new ArrayList<>();
-            for (String key : root.keySet()) {
-                JSONObject item = root.getJSONObject(key);
-                list.add(new Score(item.getString("name"), item.getInt("time")));
+            return new ScoreReader(resp.body().source()).readAll(sink);
+        } finally {
+            FETCH_TIME.recordSince(t0);
+        }
+    }
+
+    private String execute(Request req) throws IOException {
+        long t0 = Metrics.start();
+        try (Response resp = client.newCall(req).execute()) {
+            if (!resp.isSuccessful()) {
+                FAILURES.increment();
+                throw new HttpException(resp.code(), resp.body().string());
             }
-            return list;
+            return resp.body().string();
+        } finally {
+            (req.method().equals("GET") ? GET_TIME : PATCH_TIME).recordSince(t0);
+        }
+    }
+
+    // The server answered, but not with success
+    public static class HttpException extends IOException {
+        private static final long serialVersionUID = 1L;
+        public final int code;
+        public HttpException(int code, String body) {
+            super("HTTP " + code + ": " + body);
+            this.code = code;
+        }
+        // Sending the same request again will not help, unlike a 5xx, a
+        // timeout or being told to slow down
+        public boolean isRejected() {
+            return code >= 400 && code < 500 && code != 408 && code != 429;
         }
     }
 
     public static class Score {
+        public final String key;
         public final String name;
-        public final int time;
-        public Score(String name, int time) {
+        public final int time; // milliseconds
+        public final long seed;
+        // Move log of the game, null when not loaded or never recorded
+        public final byte[] replay;
+        public Score(String key, String name, int time, long seed) {
+            this(key, name, time, seed, null);
+        }
+        public Score(String key, String name, int time, long seed, byte[] replay) {
+            this.key = key;
             this.name = name;
             this.time = time;
+            this.seed = seed;
+            this.replay = replay;
         }
     }
 }
@@ -0,0 +1,96 @@
+package com.yifen9.jiraiboxsweeper.service;
+
+import com.yifen9.jiraiboxsweeper.model.Config;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// The best scores of one level, loaded a page at a time and kept sorted by time.
+// Every call returns only the scores it added, callers append them to what they show.
+public class Leaderboard {
+    private final Firebase firebase;
+    private final Config config;
+
+    private final List<Firebase.Score> scores = new ArrayList<>();
+    private final Set<String> keys = new HashSet<>();
+    // Every score slower than the last one loaded is still on the server
+    private volatile boolean exhausted;
+    private boolean loaded;
+    private String lastKey;
+
+    public Leaderboard(Firebase firebase, Config config) {
+        this.firebase = firebase;
+        this.config = config;
+    }
+
+    public Config getConfig() {
+        return config;
+    }
+
+    // First page on the first call, only what is new after that
+    public synchronized List<Firebase.Score> refresh(int pageSize) throws IOException {
+        return loaded ? sync() : loadMore(pageSize);
+    }
+
+    // A page that fails or is cancelled part way changes nothing, the first
+    // one included, so the next refresh starts over instead of syncing
+    public synchronized List<Firebase.Score> loadMore(int pageSize) throws IOException {
+        List<Firebase.Score> added = new ArrayList<>();
+        if (exhausted) return added;
+        String newest = loaded ? lastKey : firebase.fetchNewestKey(config);
+        // Ask again from the slowest time we hold, scores tied on it come back too
+        int from = scores.isEmpty() ? 0 : scores.get(scores.size() - 1).time;
+        int ties = 0;
+        for (int k = scores.size() - 1; k >= 0 && scores.get(k).time == from; k--) ties++;
+        List<Firebase.Score> page = new ArrayList<>();
+        int read = firebase.fetchTop(config, from, pageSize + ties, page::add);
+        for (Firebase.Score s : page) insert(s, added);
+        exhausted = read < pageSize + ties;
+        lastKey = newest;
+        loaded = true;
+        return added;
+    }
+
+    // Pulls scores posted since the last look, keeping only those inside the loaded range
+    public synchronized List<Firebase.Score> sync() throws IOException {
+        List<Firebase.Score> added = new ArrayList<>();
+        if (!loaded) return added;
+        // With no key yet the level was empty, so everything there is new
+        firebase.fetchScoresFrom(config, lastKey == null ? "" : lastKey, s -> {
+            if (lastKey == null || s.key.compareTo(lastKey) > 0) lastKey = s.key;
+            if (inRange(s)) insert(s, added);
+        });
+        return added;
+    }
+
+    // A score of ours that is known before the server has it, later syncs still start from the older key
+    public synchronized List<Firebase.Score> offer(Firebase.Score s) {
+        List<Firebase.Score> added = new ArrayList<>();
+        if (inRange(s)) insert(s, added);
+        return added;
+    }
+
+    // Not synchronized so the FX thread never waits on a page load
+    public boolean hasMore() {
+        return !exhausted;
+    }
+
+    private boolean inRange(Firebase.Score s) {
+        return exhausted || (!scores.isEmpty() && Firebase.BY_TIME.compare(s, scores.get(scores.size() - 1)) < 0);
+    }
+
+    private void insert(Firebase.Score s, List<Firebase.Score> added) {
+        if (!keys.add(s.key)) return;
+        int at = Collections.binarySearch(scores, s, Firebase.BY_TIME);
+        scores.add(at < 0 ? -at - 1 : at, s);
+        added.add(s);
+    }
+
+    public synchronized List<Firebase.Score> getScores() {
+        return new ArrayList<>(scores);
+    }
+}
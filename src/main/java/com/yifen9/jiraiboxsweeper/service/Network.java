@@ -0,0 +1,78 @@
+package com.yifen9.jiraiboxsweeper.service;
+
+import javafx.application.Platform;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+// Runs all blocking network calls, one virtual thread per call and at most
+// a few in flight at once. Keyed calls can be cancelled or joined.
+public class Network {
+    private static final int MAX_IN_FLIGHT = 4;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore permits = new Semaphore(MAX_IN_FLIGHT);
+    private final Map<Object, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> running = executor.submit(() -> {
+            try {
+                permits.acquire();
+                try {
+                    result.complete(task.call());
+                } finally {
+                    permits.release();
+                }
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        // Cancelling the result interrupts the thread, which aborts blocking socket reads
+        result.whenComplete((v, e) -> {
+            if (result.isCancelled()) running.cancel(true);
+        });
+        return result;
+    }
+
+    // Newest wins: an older call with the same key is cancelled and its result never delivered
+    public <T> CompletableFuture<T> latest(Object key, Callable<T> task) {
+        CompletableFuture<T> result = submit(task);
+        CompletableFuture<?> old = inFlight.put(key, result);
+        if (old != null) old.cancel(true);
+        result.whenComplete((v, e) -> inFlight.remove(key, result));
+        return result;
+    }
+
+    // Joins a call with the same key that is still running instead of starting another
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> shared(Object key, Callable<T> task) {
+        CompletableFuture<T> result = (CompletableFuture<T>) inFlight.computeIfAbsent(key, k -> submit(task));
+        result.whenComplete((v, e) -> inFlight.remove(key, result));
+        return result;
+    }
+
+    // Hands the result to the FX thread once, cancelled calls are dropped quietly
+    public static <T> void onFx(CompletableFuture<T> future, Consumer<T> action) {
+        future.whenComplete((v, e) -> {
+            if (e == null) {
+                Platform.runLater(() -> action.accept(v));
+            } else if (!(e instanceof CancellationException) && !(e.getCause() instanceof CancellationException)) {
+                (e instanceof CompletionException && e.getCause() != null ? e.getCause() : e).printStackTrace();
+            }
+        });
+    }
+
+    public void close() {
+        executor.shutdownNow();
+    }
+}
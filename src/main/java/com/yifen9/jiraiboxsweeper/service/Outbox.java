@@ -0,0 +1,253 @@
+package com.yifen9.jiraiboxsweeper.service;
+
+import com.yifen9.jiraiboxsweeper.engine.MoveLog;
+import com.yifen9.jiraiboxsweeper.model.Config;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Scores waiting to be uploaded. Each one is appended to a file before anything
+// touches the network, and a background flush sends them in batches until the
+// server takes them, so a finished game is never lost to a bad connection.
+// Scores the server refuses outright are set aside in a second file.
+public class Outbox {
+    private static final int BATCH = 200;
+    private static final long FIRST_RETRY_MS = 1000;
+    private static final long MAX_RETRY_MS = 5 * 60 * 1000;
+
+    public static class Entry {
+        public final String level;
+        public final Firebase.Score score;
+        public Entry(String level, Firebase.Score score) {
+            this.level = level;
+            this.score = score;
+        }
+    }
+
+    private final Firebase firebase;
+    private final Network network;
+    private final Path file;
+    private final Path rejected;
+    private final Map<String, Entry> pending = new LinkedHashMap<>();
+    // Only keeps time, the upload itself runs on the network executor
+    private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "outbox");
+        t.setDaemon(true);
+        return t;
+    });
+    private ScheduledFuture<?> scheduled;
+    private long retryMs = FIRST_RETRY_MS;
+    // Runs on the network executor after each batch the server took
+    private volatile Runnable onFlushed;
+    // Halved while the server refuses a batch, until the entry it objects to is alone
+    private int batchSize = BATCH;
+
+    public Outbox(Firebase firebase, Network network) throws IOException {
+        this(firebase, network, dataDir().resolve("outbox.log"));
+    }
+
+    public Outbox(Firebase firebase, Network network, Path file) throws IOException {
+        this.firebase = firebase;
+        this.network = network;
+        this.file = file;
+        rejected = file.resolveSibling(file.getFileName() + ".rejected");
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        load();
+        if (!pending.isEmpty()) schedule(0);
+    }
+
+    public static Path dataDir() {
+        String os = System.getProperty("os.name", "").toLowerCase();
+        String home = System.getProperty("user.home");
+        if (os.contains("win") && System.getenv("APPDATA") != null)
+            return Paths.get(System.getenv("APPDATA"), "jiraibox-sweeper");
+        if (os.contains("mac"))
+            return Paths.get(home, "Library", "Application Support", "jiraibox-sweeper");
+        String xdg = System.getenv("XDG_DATA_HOME");
+        return Paths.get(xdg != null ? xdg : home + "/.local/share", "jiraibox-sweeper");
+    }
+
+    // Durable once this returns, the upload happens later
+    public synchronized Firebase.Score add(Config config, String name, int time, long seed, byte[] replay) throws IOException {
+        Firebase.Score score = new Firebase.Score(Firebase.newKey(), name, time, seed, replay);
+        Entry e = new Entry(config.key(), score);
+        String line = toLine(e) + "\n";
+        Files.write(file, line.getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+        pending.put(score.key, e);
+        // A new score is worth a try right away, even in the middle of a backoff
+        retryMs = FIRST_RETRY_MS;
+        schedule(0);
+        return score;
+    }
+
+    public void setOnFlushed(Runnable onFlushed) {
+        this.onFlushed = onFlushed;
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    public void close() {
+        worker.shutdownNow();
+    }
+
+    // Replaces the run that is waiting, if any. One already underway still
+    // finishes first, the worker has a single thread.
+    private void schedule(long delayMs) {
+        if (worker.isShutdown()) return;
+        if (scheduled != null) scheduled.cancel(false);
+        scheduled = worker.schedule(this::flushNow, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Waits for the upload so flushes never overlap
+    private void flushNow() {
+        try {
+            network.submit(() -> {
+                flush();
+                return null;
+            }).join();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void flush() {
+        List<Entry> batch;
+        synchronized (this) {
+            batch = new ArrayList<>(pending.values());
+            if (batch.size() > batchSize) batch = batch.subList(0, batchSize);
+            if (batch.isEmpty()) return;
+        }
+        try {
+            firebase.putScores(batch);
+        } catch (Firebase.HttpException e) {
+            if (!e.isRejected()) {
+                backoff();
+                return;
+            }
+            synchronized (this) {
+                if (batch.size() > 1) {
+                    batchSize = batch.size() / 2;
+                } else {
+                    try {
+                        reject(batch.get(0));
+                    } catch (IOException io) {
+                        // Left pending rather than lost, it goes round again after a backoff
+                        io.printStackTrace();
+                        backoff();
+                        return;
+                    }
+                }
+                schedule(0);
+            }
+            return;
+        } catch (IOException e) {
+            backoff();
+            return;
+        }
+        synchronized (this) {
+            for (Entry e : batch) pending.remove(e.score.key);
+            retryMs = FIRST_RETRY_MS;
+            batchSize = Math.min(batchSize * 2, BATCH);
+            try {
+                rewrite();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            if (!pending.isEmpty()) schedule(0);
+        }
+        Runnable r = onFlushed;
+        if (r != null) r.run();
+    }
+
+    // Exponential backoff until the server answers again
+    private synchronized void backoff() {
+        schedule(retryMs);
+        retryMs = Math.min(retryMs * 2, MAX_RETRY_MS);
+    }
+
+    // Out of the queue and into the rejected file, kept there for a look by hand
+    private void reject(Entry e) throws IOException {
+        Files.write(rejected, (toLine(e) + "\n").getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+        pending.remove(e.score.key);
+        rewrite();
+    }
+
+    private void load() throws IOException {
+        for (Entry e : read(file)) pending.put(e.score.key, e);
+    }
+
+    // Every whole entry in a log of this format, later copies of a key win
+    public static List<Entry> read(Path file) throws IOException {
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        if (!Files.exists(file)) return new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            try {
+                JSONObject o = new JSONObject(line);
+                // Lines from before millisecond scores carry whole seconds
+                int time = o.has("ms") ? o.getInt("time") : o.getInt("time") * 1000;
+                byte[] replay = o.has("replay") ? MoveLog.decode(o.getString("replay")) : null;
+                Firebase.Score s = new Firebase.Score(o.getString("key"), o.getString("name"),
+                        time, Long.parseUnsignedLong(o.getString("seed"), 16), replay);
+                entries.put(s.key, new Entry(o.getString("level"), s));
+            } catch (JSONException | IllegalArgumentException e) {
+                // A line cut short by a crash mid-append, nothing after it was acknowledged
+            }
+        }
+        return new ArrayList<>(entries.values());
+    }
+
+    // Keeps only what is still pending, swapped in atomically so a crash leaves
+    // one version or the other. The new contents reach the disk before the
+    // rename does, else a power cut could keep the rename and lose the data.
+    private void rewrite() throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        StringBuilder sb = new StringBuilder();
+        for (Entry e : pending.values()) sb.append(toLine(e)).append('\n');
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+            while (buf.hasRemaining()) ch.write(buf);
+            ch.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDir(file.toAbsolutePath().getParent());
+    }
+
+    // Makes the rename itself durable. Windows cannot open a directory, there
+    // the move is as durable as it gets.
+    private static void syncDir(Path dir) {
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (IOException e) {
+            // Not supported here
+        }
+    }
+
+    private static String toLine(Entry e) {
+        JSONObject o = Firebase.toJson(e.score).put("key", e.score.key).put("level", e.level).put("ms", true);
+        if (e.score.replay != null) o.put("replay", MoveLog.encode(e.score.replay));
+        return o.toString();
+    }
+}
@@ -0,0 +1,187 @@
+package com.yifen9.jiraiboxsweeper.service;
+
+import okio.BufferedSource;
+import okio.ByteString;
+
+import java.io.IOException;
+
+// Pulls scores out of a /scores response as the bytes arrive, without
+// holding the whole body as a String or building a JSON tree for it
+public class ScoreReader {
+    public interface Sink {
+        void accept(Firebase.Score score);
+    }
+
+    private static final ByteString NAME = ByteString.encodeUtf8("\"name\"");
+    private static final ByteString TIME = ByteString.encodeUtf8("\"time\"");
+    private static final ByteString SEED = ByteString.encodeUtf8("\"seed\"");
+    private static final ByteString NULL = ByteString.encodeUtf8("null");
+
+    private final BufferedSource in;
+    private final StringBuilder text = new StringBuilder();
+
+    public ScoreReader(BufferedSource in) {
+        this.in = in;
+    }
+
+    // Reads a {key: {name, time, seed}, ...} object, or null for an empty node
+    public int readAll(Sink sink) throws IOException {
+        if (peek() == 'n') {
+            expect(NULL);
+            return 0;
+        }
+        expect('{');
+        if (peek() == '}') {
+            in.skip(1);
+            return 0;
+        }
+        int count = 0;
+        do {
+            String key = readString();
+            expect(':');
+            sink.accept(readScore(key));
+            count++;
+        } while (next() == ',');
+        return count;
+    }
+
+    private Firebase.Score readScore(String key) throws IOException {
+        String name = null;
+        long time = -1;
+        long seed = 0;
+        expect('{');
+        if (peek() == '}') {
+            in.skip(1);
+        } else {
+            do {
+                peek();
+                // Field names are matched in the buffer, they never become Strings
+                if (in.rangeEquals(0, NAME)) {
+                    in.skip(NAME.size());
+                    expect(':');
+                    name = readString();
+                } else if (in.rangeEquals(0, TIME)) {
+                    in.skip(TIME.size());
+                    expect(':');
+                    time = readLong();
+                } else if (in.rangeEquals(0, SEED)) {
+                    in.skip(SEED.size());
+                    expect(':');
+                    seed = Long.parseUnsignedLong(readString(), 16);
+                } else {
+                    skipString();
+                    expect(':');
+                    skipValue();
+                }
+            } while (next() == ',');
+        }
+        if (name == null || time < 0) throw new IOException("Malformed score " + key);
+        return new Firebase.Score(key, name, (int) time, seed);
+    }
+
+    private int peek() throws IOException {
+        while (true) {
+            in.require(1);
+            byte b = in.getBuffer().getByte(0);
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') return b;
+            in.skip(1);
+        }
+    }
+
+    private int next() throws IOException {
+        peek();
+        return in.readByte();
+    }
+
+    private void expect(char c) throws IOException {
+        int b = next();
+        if (b != c) throw new IOException("Expected '" + c + "' but got '" + (char) b + "'");
+    }
+
+    private void expect(ByteString literal) throws IOException {
+        if (!in.rangeEquals(0, literal)) throw new IOException("Expected " + literal.utf8());
+        in.skip(literal.size());
+    }
+
+    private long readLong() throws IOException {
+        peek();
+        long value = in.readDecimalLong();
+        // Whole numbers only, drop any fraction or exponent
+        while (in.request(1)) {
+            byte b = in.getBuffer().getByte(0);
+            if (b != '.' && b != 'e' && b != 'E' && b != '+' && b != '-' && (b < '0' || b > '9')) break;
+            in.skip(1);
+        }
+        return value;
+    }
+
+    private String readString() throws IOException {
+        expect('"');
+        long quote = in.indexOf((byte) '"');
+        long escape = in.indexOf((byte) '\\', 0, quote);
+        if (escape == -1) {
+            String s = in.readUtf8(quote);
+            in.skip(1);
+            return s;
+        }
+        text.setLength(0);
+        while (escape != -1) {
+            text.append(in.readUtf8(escape));
+            in.skip(1);
+            byte b = in.readByte();
+            switch (b) {
+                case 'n': text.append('\n'); break;
+                case 't': text.append('\t'); break;
+                case 'r': text.append('\r'); break;
+                case 'b': text.append('\b'); break;
+                case 'f': text.append('\f'); break;
+                case 'u': text.append((char) Integer.parseInt(in.readUtf8(4), 16)); break;
+                default: text.append((char) b);
+            }
+            quote = in.indexOf((byte) '"');
+            escape = in.indexOf((byte) '\\', 0, quote);
+        }
+        text.append(in.readUtf8(quote));
+        in.skip(1);
+        return text.toString();
+    }
+
+    private void skipString() throws IOException {
+        expect('"');
+        while (true) {
+            long quote = in.indexOf((byte) '"');
+            long escape = in.indexOf((byte) '\\', 0, quote);
+            if (escape == -1) {
+                in.skip(quote + 1);
+                return;
+            }
+            in.skip(escape + 2);
+        }
+    }
+
+    private void skipValue() throws IOException {
+        int b = peek();
+        if (b == '"') {
+            skipString();
+        } else if (b == '{' || b == '[') {
+            int depth = 0;
+            do {
+                b = peek();
+                if (b == '"') {
+                    skipString();
+                    continue;
+                }
+                in.skip(1);
+                if (b == '{' || b == '[') depth++;
+                else if (b == '}' || b == ']') depth--;
+            } while (depth > 0);
+        } else {
+            // Number, true, false or null
+            while (in.request(1)) {
+                b = in.getBuffer().getByte(0);
+                if (b == ',' || b == '}' || b == ']' || b == ' ' || b == '\n' || b == '\r' || b == '\t') break;
+                in.skip(1);
+            }
+        }
+    }
+}
@@ -1,31 +1,48 @@
 package com.yifen9.jiraiboxsweeper.service;
 
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
-import javafx.util.Duration;
+import javafx.animation.AnimationTimer;
 
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+// Shows a clock kept elsewhere. It polls on animation pulses and calls back only when
+// the whole second changes, so a stalled FX thread delays the display but loses no time.
 public class Timer {
-    private final Timeline timeline;
-    private int seconds = 0;
-
-    public Timer(Runnable tickCallback) {
-        timeline = new Timeline(new KeyFrame(Duration.seconds(1), e -> {
-            seconds++;
-            tickCallback.run();
-        }));
-        timeline.setCycleCount(Timeline.INDEFINITE);
+    private final LongSupplier elapsedNanos;
+    private final LongConsumer onSecond;
+    private final AnimationTimer pulses;
+    private long shown = -1;
+
+    public Timer(LongSupplier elapsedNanos, LongConsumer onSecond) {
+        this.elapsedNanos = elapsedNanos;
+        this.onSecond = onSecond;
+        pulses = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                tick();
+            }
+        };
     }
 
     public void reset() {
-        seconds = 0;
-        timeline.playFromStart();
+        shown = -1;
+        tick();
+        pulses.start();
     }
 
     public void stop() {
-        timeline.stop();
+        pulses.stop();
+        tick();
     }
 
     public int getSeconds() {
-        return seconds;
+        return (int) (elapsedNanos.getAsLong() / 1_000_000_000L);
+    }
+
+    private void tick() {
+        long s = getSeconds();
+        if (s == shown) return;
+        shown = s;
+        onSecond.accept(s);
     }
-}
\ No newline at end of file
+}
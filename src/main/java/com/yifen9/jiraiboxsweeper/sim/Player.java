@@ -0,0 +1,94 @@
+package com.yifen9.jiraiboxsweeper.sim;
+
+import com.yifen9.jiraiboxsweeper.model.Board;
+import com.yifen9.jiraiboxsweeper.model.CellBuffer;
+
+// Plays on with the two single-cell rules and never guesses: a number whose
+// mines are all flagged opens the rest, one with exactly as many hidden
+// neighbours as mines flags them all. Only cells next to the last change are
+// looked at again.
+class Player {
+    private int rows, cols;
+    private int clicks;
+    // Ring of cells to look at, each in it at most once
+    private int[] queue = new int[0];
+    private boolean[] queued = new boolean[0];
+    private int head, count;
+
+    // Counts every reveal, chord and flag, the first click included
+    int getClicks() {
+        return clicks;
+    }
+
+    // Takes a board right after its first reveal, true if it got cleared
+    boolean play(Board board) {
+        rows = board.getRows();
+        cols = board.getCols();
+        if (queue.length != rows * cols) {
+            queue = new int[rows * cols];
+            queued = new boolean[rows * cols];
+            count = 0;
+        }
+        // A cleared board can leave cells behind in the queue
+        for (; count > 0; count--) {
+            queued[queue[head]] = false;
+            head = head + 1 == queue.length ? 0 : head + 1;
+        }
+        clicks = 1;
+        queueChanges(board);
+        while (count > 0 && !board.isCleared()) {
+            int i = queue[head];
+            queued[i] = false;
+            head = head + 1 == queue.length ? 0 : head + 1;
+            count--;
+            int adj = board.getAdjacent(i);
+            int r = i / cols, c = i % cols;
+            int r0 = Math.max(0, r - 1), r1 = Math.min(rows - 1, r + 1);
+            int c0 = Math.max(0, c - 1), c1 = Math.min(cols - 1, c + 1);
+            int hidden = 0, flagged = 0;
+            for (int nr = r0; nr <= r1; nr++)
+                for (int nc = c0; nc <= c1; nc++) {
+                    int j = nr * cols + nc;
+                    if (board.isFlagged(j)) flagged++;
+                    else if (!board.isSeen(j)) hidden++;
+                }
+            if (hidden == 0) continue;
+            if (flagged == adj) {
+                board.expand(r, c);
+                clicks++;
+                queueChanges(board);
+            } else if (flagged + hidden == adj) {
+                for (int nr = r0; nr <= r1; nr++)
+                    for (int nc = c0; nc <= c1; nc++) {
+                        int j = nr * cols + nc;
+                        if (!board.isSeen(j) && !board.isFlagged(j)) {
+                            board.flag(nr, nc);
+                            clicks++;
+                            queueAround(board, j);
+                        }
+                    }
+            }
+        }
+        return board.isCleared();
+    }
+
+    private void queueChanges(Board board) {
+        CellBuffer changed = board.getChanges();
+        for (int k = 0; k < changed.size(); k++) queueAround(board, changed.get(k));
+    }
+
+    // The cell and its neighbours, whose counts of hidden cells just moved.
+    // Only open numbers can act, so nothing else goes in.
+    private void queueAround(Board board, int i) {
+        int r = i / cols, c = i % cols;
+        for (int nr = Math.max(0, r - 1); nr <= Math.min(rows - 1, r + 1); nr++)
+            for (int nc = Math.max(0, c - 1); nc <= Math.min(cols - 1, c + 1); nc++) {
+                int j = nr * cols + nc;
+                if (queued[j] || !board.isSeen(j) || board.getAdjacent(j) == 0 || board.isMine(j)) continue;
+                queued[j] = true;
+                int tail = head + count;
+                queue[tail >= queue.length ? tail - queue.length : tail] = j;
+                count++;
+            }
+    }
+}
@@ -0,0 +1,138 @@
+package com.yifen9.jiraiboxsweeper.sim;
+
+import com.yifen9.jiraiboxsweeper.metrics.Histogram;
+import com.yifen9.jiraiboxsweeper.model.Board;
+import com.yifen9.jiraiboxsweeper.model.Config;
+import com.yifen9.jiraiboxsweeper.solver.NoGuess;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+// Generates and plays many boards across all cores. Work is cut into chunks,
+// each with its own random stream, board and scratch arrays, so the only
+// thing threads share is the merge of their finished statistics.
+public class Simulation {
+    private static final int CHUNK = 4096;
+
+    public static class Stats {
+        public long games;
+        // Cleared by the rule player from the first click without a guess
+        public long solved;
+        // Cleared by the full solver, which takes over where the rules stop.
+        // Only counted when asked for, it is much slower than the rules.
+        public long deduced;
+        public final Histogram threeBV = new Histogram();
+        public final Histogram clicks = new Histogram();
+        public final Histogram openings = new Histogram();
+        public final Histogram genNanos = new Histogram();
+
+        void merge(Stats other) {
+            games += other.games;
+            solved += other.solved;
+            deduced += other.deduced;
+            threeBV.merge(other.threeBV);
+            clicks.merge(other.clicks);
+            openings.merge(other.openings);
+            genNanos.merge(other.genNanos);
+        }
+    }
+
+    public static Stats run(Config config, long games, long seed, boolean solver) {
+        int chunks = (int) ((games + CHUNK - 1) / CHUNK);
+        // Split up front so the result does not depend on which thread ran what
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] streams = new SplittableRandom[chunks];
+        for (int k = 0; k < chunks; k++) streams[k] = root.split();
+        return IntStream.range(0, chunks).parallel()
+                .mapToObj(k -> playChunk(config, streams[k], (int) Math.min(CHUNK, games - (long) k * CHUNK), solver))
+                .collect(Stats::new, Stats::merge, Stats::merge);
+    }
+
+    private static Stats playChunk(Config config, SplittableRandom rnd, int games, boolean solver) {
+        Stats stats = new Stats();
+        Board board = new Board(config, 0);
+        Player player = new Player();
+        int size = config.rows * config.cols;
+        int[] mark = new int[size];
+        int[] queue = new int[size];
+        int r = config.rows / 2, c = config.cols / 2;
+        for (int g = 1; g <= games; g++) {
+            long t0 = System.nanoTime();
+            board.reset(rnd.nextLong());
+            board.place(r, c);
+            stats.genNanos.record(System.nanoTime() - t0);
+
+            stats.threeBV.record(threeBV(board, mark, queue, g, stats.openings));
+            board.reveal(r, c);
+            if (player.play(board)) {
+                stats.solved++;
+                stats.deduced++;
+                stats.clicks.record(player.getClicks());
+            } else if (solver) {
+                board.reset(board.getSeed());
+                if (NoGuess.isSolvable(board, r, c)) stats.deduced++;
+            }
+            stats.games++;
+        }
+        return stats;
+    }
+
+    // Fewest left clicks that clear the board: one per opening, plus one per
+    // safe cell no opening reaches. Cells are marked with the game number so
+    // the array never needs clearing.
+    static int threeBV(Board board, int[] mark, int[] queue, int stamp, Histogram openings) {
+        int rows = board.getRows(), cols = board.getCols();
+        int size = rows * cols;
+        int clicks = 0;
+        for (int i = 0; i < size; i++) {
+            if (mark[i] == stamp || board.isMine(i) || board.getAdjacent(i) != 0) continue;
+            clicks++;
+            int n = 0, region = 0;
+            mark[i] = stamp;
+            queue[n++] = i;
+            for (int head = 0; head < n; head++) {
+                int j = queue[head];
+                region++;
+                if (board.getAdjacent(j) != 0) continue;
+                int jr = j / cols, jc = j % cols;
+                for (int nr = Math.max(0, jr - 1); nr <= Math.min(rows - 1, jr + 1); nr++)
+                    for (int nc = Math.max(0, jc - 1); nc <= Math.min(cols - 1, jc + 1); nc++) {
+                        int k = nr * cols + nc;
+                        if (mark[k] != stamp) {
+                            mark[k] = stamp;
+                            queue[n++] = k;
+                        }
+                    }
+            }
+            openings.record(region);
+        }
+        for (int i = 0; i < size; i++)
+            if (mark[i] != stamp && !board.isMine(i)) clicks++;
+        return clicks;
+    }
+
+    // sim [--solver] [level] [games] [seed]
+    public static void main(String[] args) {
+        boolean solver = args.length > 0 && args[0].equals("--solver");
+        if (solver) args = Arrays.copyOfRange(args, 1, args.length);
+        Config config = args.length > 0 ? Config.parse(args[0]) : Config.BEGINNER;
+        long games = args.length > 1 ? Long.parseLong(args[1]) : 1_000_000;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+
+        long t0 = System.nanoTime();
+        Stats stats = run(config, games, seed, solver);
+        double secs = (System.nanoTime() - t0) / 1e9;
+
+        System.out.printf("%s, %d games, seed %d, %d threads%n", config, stats.games, seed,
+                Runtime.getRuntime().availableProcessors());
+        System.out.printf("%.2f s, %.0f boards/s%n", secs, stats.games / secs);
+        System.out.printf("cleared by single rules  %.3f%%%n", 100.0 * stats.solved / Math.max(1, stats.games));
+        if (solver)
+            System.out.printf("cleared by the solver    %.3f%%%n", 100.0 * stats.deduced / Math.max(1, stats.games));
+        System.out.println("3BV                      " + stats.threeBV);
+        System.out.println("clicks to win (solved)   " + stats.clicks);
+        System.out.println("opening size             " + stats.openings);
+        System.out.println("generation ns            " + stats.genNanos);
+    }
+}
@@ -0,0 +1,104 @@
+package com.yifen9.jiraiboxsweeper.sim;
+
+import com.yifen9.jiraiboxsweeper.engine.MoveLog;
+import com.yifen9.jiraiboxsweeper.model.Board;
+import com.yifen9.jiraiboxsweeper.model.Config;
+import com.yifen9.jiraiboxsweeper.service.Firebase;
+import com.yifen9.jiraiboxsweeper.service.Outbox;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+// Checks scores by playing their move logs again on a fresh board of the
+// same seed. A score holds if the log wins the game on its last move and
+// its move times add up to the time claimed.
+public class Verifier {
+    public enum Verdict { VALID, MISSING, MALFORMED, NOT_WON, TIME_MISMATCH }
+
+    private static final int CHUNK = 1024;
+
+    // Plays the log on a board already reset to the score's seed
+    public static Verdict verify(Board board, byte[] log, long millis) {
+        if (log == null) return Verdict.MISSING;
+        int cols = board.getCols(), size = board.getRows() * cols;
+        long total = 0;
+        MoveLog.Reader moves = new MoveLog.Reader(log);
+        try {
+            while (moves.next()) {
+                // Nothing may follow the move that ended the game
+                if (board.isExploded() || board.isCleared() || moves.cell >= size) return Verdict.MALFORMED;
+                int r = moves.cell / cols, c = moves.cell % cols;
+                switch (moves.action) {
+                    case MoveLog.REVEAL: board.reveal(r, c); break;
+                    case MoveLog.FLAG: board.flag(r, c); break;
+                    case MoveLog.EXPAND: board.expand(r, c); break;
+                    default: return Verdict.MALFORMED;
+                }
+                // A ten byte varint reads back negative, and enough huge ones wrap
+                // round, either would let a forged log make up any total
+                if (moves.delta < 0) return Verdict.MALFORMED;
+                total = Math.addExact(total, moves.delta);
+            }
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            return Verdict.MALFORMED;
+        }
+        if (board.isExploded() || !board.isCleared()) return Verdict.NOT_WON;
+        return total == millis ? Verdict.VALID : Verdict.TIME_MISMATCH;
+    }
+
+    // All entries across all cores, each chunk with its own boards
+    public static Verdict[] verifyAll(List<Outbox.Entry> entries) {
+        Verdict[] verdicts = new Verdict[entries.size()];
+        int chunks = (entries.size() + CHUNK - 1) / CHUNK;
+        IntStream.range(0, chunks).parallel().forEach(k -> {
+            Map<String, Board> boards = new HashMap<>();
+            for (int i = k * CHUNK; i < Math.min(entries.size(), (k + 1) * CHUNK); i++) {
+                Outbox.Entry e = entries.get(i);
+                Board board = boards.computeIfAbsent(e.level, level -> new Board(Config.fromKey(level), 0));
+                board.reset(e.score.seed);
+                verdicts[i] = verify(board, e.score.replay, e.score.time);
+            }
+        });
+        return verdicts;
+    }
+
+    // verify <outbox or exported file> | verify --fetch <level>
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) throw new IllegalArgumentException("Usage: verify <file> | verify --fetch <rows>x<cols>x<mines>");
+        List<Outbox.Entry> entries;
+        if (args[0].equals("--fetch")) {
+            Config config = Config.fromKey(args[1]);
+            entries = new ArrayList<>();
+            Firebase firebase = new Firebase();
+            Map<String, byte[]> replays = firebase.fetchReplays(config);
+            List<Outbox.Entry> found = entries;
+            firebase.fetchAll(config, s -> found.add(new Outbox.Entry(config.key(),
+                    new Firebase.Score(s.key, s.name, s.time, s.seed, replays.get(s.key)))));
+        } else {
+            entries = Outbox.read(Paths.get(args[0]));
+        }
+
+        long t0 = System.nanoTime();
+        Verdict[] verdicts = verifyAll(entries);
+        double secs = (System.nanoTime() - t0) / 1e9;
+
+        Map<Verdict, Integer> counts = new EnumMap<>(Verdict.class);
+        for (Verdict v : verdicts) counts.merge(v, 1, Integer::sum);
+        System.out.printf("%d replays in %.2f s, %.0f replays/s, %d threads%n", entries.size(), secs,
+                entries.size() / secs, Runtime.getRuntime().availableProcessors());
+        counts.forEach((v, n) -> System.out.printf("%-14s %d%n", v, n));
+        int shown = 0;
+        for (int i = 0; i < verdicts.length && shown < 20; i++) {
+            if (verdicts[i] == Verdict.VALID) continue;
+            Outbox.Entry e = entries.get(i);
+            System.out.printf("  %s %s %s %s%n", verdicts[i], e.level, e.score.key, e.score.name);
+            shown++;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.yifen9.jiraiboxsweeper.solver;
+
+import com.yifen9.jiraiboxsweeper.metrics.Histogram;
+import com.yifen9.jiraiboxsweeper.metrics.Metrics;
+import com.yifen9.jiraiboxsweeper.model.Board;
+import com.yifen9.jiraiboxsweeper.model.Config;
+
+import java.util.SplittableRandom;
+
+// Boards that can be cleared from the first click by deduction alone
+public class NoGuess {
+    private static final Histogram GENERATE_TIME = Metrics.timer("noguess.generate");
+    private static final Histogram BOARDS_TRIED = Metrics.histogram("noguess.boards", "boards");
+
+    // Tries seeds drawn from `seed` until the solver clears one from (r, c).
+    // The board comes back fresh, revealing (r, c) on it replays that game.
+    // After `attempts` misses the last board tried is returned as it is.
+    public static Board generate(Config config, int r, int c, long seed, int attempts) {
+        long t0 = Metrics.start();
+        SplittableRandom rnd = new SplittableRandom(seed);
+        Board board = new Board(config, rnd.nextLong());
+        int k = 1;
+        for (; k < attempts && !isSolvable(board, r, c); k++) board.reset(rnd.nextLong());
+        board.reset(board.getSeed());
+        BOARDS_TRIED.record(k);
+        GENERATE_TIME.recordSince(t0);
+        return board;
+    }
+
+    // Plays the board from (r, c) opening only proven safe cells, leaves it played
+    public static boolean isSolvable(Board board, int r, int c) {
+        board.reveal(r, c);
+        Solver solver = new Solver(board);
+        solver.update(board.getChanges());
+        while (!board.isCleared()) {
+            solver.solve();
+            int i = solver.findSafe();
+            if (i < 0) return false;
+            board.reveal(i / board.getCols(), i % board.getCols());
+            solver.update(board.getChanges());
+        }
+        return true;
+    }
+}
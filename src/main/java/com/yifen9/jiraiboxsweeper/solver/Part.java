@@ -0,0 +1,146 @@
+package com.yifen9.jiraiboxsweeper.solver;
+
+import com.yifen9.jiraiboxsweeper.solver.Solver.Counts;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// One frontier part as a counting problem: its cells, and for each open
+// number on it the part cells around it and the mines it still needs there.
+// Holds no board state, so it can be counted on any thread.
+class Part {
+    final int[] cells;
+    final int[] numbers;
+    // Mines each number still needs, and how many part cells it touches
+    final int[] need;
+    final int[] reach;
+    // Numbers each cell sits next to
+    final int[][] cellNums;
+
+    Part(int[] cells, int[] numbers, int[] need, List<int[]> numberCells) {
+        this.cells = cells;
+        this.numbers = numbers;
+        this.need = need;
+        int n = cells.length, m = numbers.length;
+        reach = new int[m];
+        int[] deg = new int[n];
+        for (int q = 0; q < m; q++) {
+            reach[q] = numberCells.get(q).length;
+            for (int j : numberCells.get(q)) deg[j]++;
+        }
+        cellNums = new int[n][];
+        for (int j = 0; j < n; j++) cellNums[j] = new int[deg[j]];
+        Arrays.fill(deg, 0);
+        for (int q = 0; q < m; q++) for (int j : numberCells.get(q)) cellNums[j][deg[j]++] = q;
+    }
+
+    // The cells and the numbers on them, equal keys count the same
+    int[] key() {
+        int n = cells.length, m = numbers.length;
+        int[] data = new int[n + 2 * m];
+        System.arraycopy(cells, 0, data, 0, n);
+        for (int q = 0; q < m; q++) {
+            data[n + 2 * q] = numbers[q];
+            data[n + 2 * q + 1] = need[q];
+        }
+        return data;
+    }
+
+    // Every arrangement that satisfies the numbers, or null when it takes
+    // more than `budget` steps or runs past the deadline
+    Counts count(long budget, long deadline) {
+        Search s = new Search(budget, deadline);
+        Counts counts = new Counts(cells.length);
+        return s.run(0, 0, new boolean[cells.length], need.clone(), reach.clone(), counts) ? counts : null;
+    }
+
+    private class Search {
+        final long budget, deadline;
+        long nodes;
+
+        Search(long budget, long deadline) {
+            this.budget = budget;
+            this.deadline = deadline;
+        }
+
+        // Depth first over the cells in flood order, cutting a branch as soon
+        // as a number has too many mines or too few cells left to reach its count
+        boolean run(int d, int mines, boolean[] mine, int[] need, int[] left, Counts counts) {
+            if (++nodes > budget) return false;
+            if ((nodes & 4095) == 0 && System.nanoTime() - deadline > 0) return false;
+            int n = mine.length;
+            if (d == n) {
+                counts.ways[mines]++;
+                for (int j = 0; j < n; j++) if (mine[j]) counts.cellWays[j][mines]++;
+                return true;
+            }
+            for (int v = 0; v <= 1; v++) {
+                boolean ok = true;
+                for (int q : cellNums[d]) {
+                    left[q]--;
+                    need[q] -= v;
+                    if (need[q] < 0 || need[q] > left[q]) ok = false;
+                }
+                mine[d] = v == 1;
+                boolean done = !ok || run(d + 1, mines + v, mine, need, left, counts);
+                for (int q : cellNums[d]) {
+                    left[q]++;
+                    need[q] += v;
+                }
+                if (!done) return false;
+            }
+            mine[d] = false;
+            return true;
+        }
+    }
+
+    // Estimates the same counts from random walks down the search tree, each
+    // walk picking a value that still fits at random. A walk that reaches the
+    // end stands for 2^(coin flips it made) arrangements, which makes the
+    // average over walks an unbiased count (Knuth's tree size estimator).
+    // Walks at least `minWalks` times, then on until the deadline.
+    Counts sample(SplittableRandom rnd, long deadline, int minWalks) {
+        int n = cells.length, m = need.length;
+        Counts counts = new Counts(n);
+        int[] needLeft = new int[m], left = new int[m];
+        boolean[] mine = new boolean[n];
+        long walks = 0;
+        do {
+            for (int b = 0; b < 64; b++, walks++) {
+                System.arraycopy(need, 0, needLeft, 0, m);
+                System.arraycopy(reach, 0, left, 0, m);
+                walk(rnd, mine, needLeft, left, counts);
+            }
+        } while (walks < minWalks || System.nanoTime() - deadline < 0);
+        for (int k = 0; k <= n; k++) {
+            counts.ways[k] /= walks;
+            for (int j = 0; j < n; j++) counts.cellWays[j][k] /= walks;
+        }
+        return counts;
+    }
+
+    private void walk(SplittableRandom rnd, boolean[] mine, int[] need, int[] left, Counts counts) {
+        int n = mine.length, mines = 0, flips = 0;
+        for (int d = 0; d < n; d++) {
+            boolean safe = fits(d, 0, need, left), mined = fits(d, 1, need, left);
+            if (!safe && !mined) return;
+            int v = safe && mined ? rnd.nextInt(2) : mined ? 1 : 0;
+            if (safe && mined) flips++;
+            for (int q : cellNums[d]) {
+                left[q]--;
+                need[q] -= v;
+            }
+            mine[d] = v == 1;
+            mines += v;
+        }
+        double weight = Math.scalb(1.0, flips);
+        counts.ways[mines] += weight;
+        for (int j = 0; j < n; j++) if (mine[j]) counts.cellWays[j][mines] += weight;
+    }
+
+    private boolean fits(int d, int v, int[] need, int[] left) {
+        for (int q : cellNums[d]) if (need[q] - v < 0 || need[q] - v > left[q] - 1) return false;
+        return true;
+    }
+}
@@ -0,0 +1,171 @@
+package com.yifen9.jiraiboxsweeper.solver;
+
+import com.yifen9.jiraiboxsweeper.solver.Solver.Component;
+import com.yifen9.jiraiboxsweeper.solver.Solver.Counts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+// Chance of a mine under every hidden cell. Each frontier part is counted on
+// its own, the parts in parallel, then they are weighed together with the
+// cells off the frontier: an arrangement putting s mines on the frontier
+// stands for C(off, left - s) whole boards.
+public class Probabilities {
+    // Steps for an exact count of one part before sampling takes over
+    private static final long EXACT_BUDGET = 1 << 22;
+    private static final int MIN_WALKS = 1024;
+    // Parts past this are not even sampled, their cells count as off the frontier
+    private static final int MAX_SAMPLED = 1000;
+
+    // ln(n!), grown on demand and shared by every computation
+    private static volatile double[] logFact = {0};
+
+    private final byte[] state;
+    private final int[][] cells;
+    // Counts the solver already had, or the part to count where it had none
+    private final Counts[] known;
+    private final Part[] parts;
+    // Undecided cells off the frontier, and mines not deduced yet
+    private final int[] off;
+    private final int left;
+
+    // Copies what it needs from a solved solver, so call it on the thread that
+    // owns the board. Everything after that runs on any thread.
+    public Probabilities(Solver solver) {
+        state = solver.state.clone();
+        left = solver.minesLeft;
+        List<int[]> cellList = new ArrayList<>();
+        List<Counts> knownList = new ArrayList<>();
+        List<Part> partList = new ArrayList<>();
+        boolean[] inPart = new boolean[solver.size];
+        for (Component comp : solver.comps) {
+            if (!comp.alive || (comp.counts == null && comp.cells.length > MAX_SAMPLED)) continue;
+            cellList.add(comp.cells);
+            knownList.add(comp.counts);
+            partList.add(comp.counts == null ? solver.part(comp.cells) : null);
+            for (int x : comp.cells) inPart[x] = true;
+        }
+        cells = cellList.toArray(new int[0][]);
+        known = knownList.toArray(new Counts[0]);
+        parts = partList.toArray(new Part[0]);
+        int n = 0;
+        int[] offCells = new int[solver.unknown];
+        for (int i = 0; i < solver.size; i++)
+            if (state[i] == Solver.UNKNOWN && !inPart[i]) offCells[n++] = i;
+        off = Arrays.copyOf(offCells, n);
+    }
+
+    // Per cell chance of a mine, -1 for open cells. Exact unless a part is too
+    // big to count in half the budget, then sampled until the budget runs out.
+    public double[] compute(long budgetNanos) {
+        long start = System.nanoTime();
+        long exactBy = start + budgetNanos / 2, end = start + budgetNanos;
+        int p = cells.length;
+        Counts[] counts = known.clone();
+        IntStream.range(0, p).parallel().forEach(k -> {
+            if (counts[k] != null) return;
+            Counts c = parts[k].count(EXACT_BUDGET, exactBy);
+            counts[k] = c != null ? c : parts[k].sample(new SplittableRandom(k), end, MIN_WALKS);
+        });
+
+        // Each part's counts scaled to a peak of 1, only ratios matter
+        double[] scale = new double[p];
+        int total = 0;
+        for (int k = 0; k < p; k++) {
+            double max = 0;
+            for (double w : counts[k].ways) max = Math.max(max, w);
+            scale[k] = max > 0 ? 1 / max : 0;
+            total += cells[k].length;
+        }
+
+        // before[k][s]: ways for parts before k to hold s mines.
+        // after[k][s]: with s mines already placed before part k, the ways to
+        // finish the board from part k on, the cells off the frontier included.
+        double[][] before = new double[p + 1][];
+        double[][] after = new double[p + 1][];
+        before[0] = new double[] {1};
+        for (int k = 0; k < p; k++) {
+            double[] prev = before[k], ways = counts[k].ways;
+            double[] next = new double[prev.length + ways.length - 1];
+            for (int s = 0; s < prev.length; s++)
+                for (int m = 0; m < ways.length; m++) next[s + m] += prev[s] * ways[m] * scale[k];
+            before[k + 1] = normalize(next);
+        }
+        after[p] = offWeights(total);
+        for (int k = p - 1; k >= 0; k--) {
+            double[] ways = counts[k].ways, next = after[k + 1];
+            double[] cur = new double[before[k].length];
+            for (int s = 0; s < cur.length; s++)
+                for (int m = 0; m < ways.length; m++) cur[s] += ways[m] * scale[k] * next[s + m];
+            after[k] = normalize(cur);
+        }
+
+        double[] prob = new double[state.length];
+        for (int i = 0; i < prob.length; i++)
+            prob[i] = state[i] == Solver.OPEN ? -1 : state[i] == Solver.MINE ? 1 : 0;
+        for (int k = 0; k < p; k++) {
+            // Weight of the part holding m mines, summed over everything else
+            double[] ways = counts[k].ways, w = new double[ways.length];
+            double sum = 0;
+            for (int m = 0; m < ways.length; m++) {
+                for (int s = 0; s < before[k].length; s++) w[m] += before[k][s] * after[k + 1][s + m];
+                sum += ways[m] * w[m];
+            }
+            for (int j = 0; j < cells[k].length; j++) {
+                double mined = 0;
+                for (int m = 0; m < ways.length; m++) mined += counts[k].cellWays[j][m] * w[m];
+                prob[cells[k][j]] = sum > 0 ? mined / sum : -1;
+            }
+        }
+        if (off.length > 0) {
+            // Mines the cells off the frontier hold on average, spread evenly
+            double[] g = after[p], b = before[p];
+            double sum = 0, mines = 0;
+            for (int s = 0; s < b.length; s++) {
+                sum += b[s] * g[s];
+                mines += b[s] * g[s] * (left - s);
+            }
+            double q = sum > 0 ? mines / sum / off.length : -1;
+            for (int i : off) prob[i] = q;
+        }
+        return prob;
+    }
+
+    // Ways to put the rest of the mines off the frontier once s are on it,
+    // C(off, left - s) for s up to `total`, scaled so the largest is 1
+    private double[] offWeights(int total) {
+        double[] lf = logFactorials(off.length);
+        double[] logs = new double[total + 1];
+        double max = Double.NEGATIVE_INFINITY;
+        for (int s = 0; s <= total; s++) {
+            int rest = left - s;
+            logs[s] = rest < 0 || rest > off.length ? Double.NEGATIVE_INFINITY
+                    : lf[off.length] - lf[rest] - lf[off.length - rest];
+            max = Math.max(max, logs[s]);
+        }
+        double[] g = new double[total + 1];
+        if (max == Double.NEGATIVE_INFINITY) return g;
+        for (int s = 0; s <= total; s++) g[s] = Math.exp(logs[s] - max);
+        return g;
+    }
+
+    // Keeps long products of counts in range, only ratios are read
+    private static double[] normalize(double[] a) {
+        double max = 0;
+        for (double v : a) max = Math.max(max, v);
+        if (max > 0) for (int s = 0; s < a.length; s++) a[s] /= max;
+        return a;
+    }
+
+    private static double[] logFactorials(int n) {
+        double[] lf = logFact;
+        if (lf.length > n) return lf;
+        double[] grown = Arrays.copyOf(lf, Math.max(n + 1, lf.length * 2));
+        for (int i = lf.length; i < grown.length; i++) grown[i] = grown[i - 1] + Math.log(i);
+        logFact = grown;
+        return grown;
+    }
+}
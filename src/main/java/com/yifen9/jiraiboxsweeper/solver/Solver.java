@@ -0,0 +1,500 @@
+package com.yifen9.jiraiboxsweeper.solver;
+
+import com.yifen9.jiraiboxsweeper.model.Board;
+import com.yifen9.jiraiboxsweeper.model.CellBuffer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Works out which hidden cells are certainly safe or mined from the open
+// numbers, cheapest first: one number alone, two overlapping numbers, then
+// every arrangement of each independent part of the frontier. Only what
+// changed since the last call is looked at again, so feed it each move.
+public class Solver {
+    static final byte UNKNOWN = 0, SAFE = 1, MINE = 2, OPEN = 3;
+    // Frontier parts bigger than this, or taking more steps, are left undecided
+    static final int MAX_COMPONENT = 64;
+    private static final long NODE_BUDGET = 1 << 13;
+    // Past this many frontier mines the total mine count is not used
+    private static final int MAX_GLOBAL = 512;
+    private static final int MEMO_SIZE = 1024;
+
+    final Board board;
+    final int rows, cols, size;
+    final byte[] state;
+    // Hidden cells and mines not deduced yet
+    int unknown, minesLeft;
+
+    // Numbers to run the local rules on
+    private final CellBuffer work = new CellBuffer();
+    private final boolean[] inWork;
+    private int workHead;
+    // Numbers whose frontier part needs counting again
+    private final CellBuffer touched = new CellBuffer();
+    private final boolean[] isTouched;
+    // Cells freed from a dropped part, they join whatever part forms next
+    private final CellBuffer loose = new CellBuffer();
+
+    // Deduced safe, some of them opened since
+    private final CellBuffer safe = new CellBuffer();
+    private int safeHead;
+
+    final Component[] compOf;
+    final List<Component> comps = new ArrayList<>();
+    private final Map<Key, Counts> memo = new LinkedHashMap<Key, Counts>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Counts> eldest) {
+            return size() > MEMO_SIZE;
+        }
+    };
+
+    // Scratch for counting one part
+    private final int[] slot;
+    private final CellBuffer queue = new CellBuffer();
+
+    // Arrangements of one frontier part: ways[k] have k mines, and in
+    // cellWays[j][k] of those the part's j-th cell is a mine
+    static class Counts {
+        final double[] ways;
+        final double[][] cellWays;
+
+        Counts(int n) {
+            ways = new double[n + 1];
+            cellWays = new double[n][n + 1];
+        }
+
+        int minMines() {
+            for (int k = 0; k < ways.length; k++) if (ways[k] > 0) return k;
+            return 0;
+        }
+
+        int maxMines() {
+            for (int k = ways.length - 1; k >= 0; k--) if (ways[k] > 0) return k;
+            return 0;
+        }
+    }
+
+    // Hidden cells tied together by the numbers around them, in flood order
+    static class Component {
+        final int[] cells;
+        // Null when the part was too big to count
+        final Counts counts;
+        boolean alive = true;
+
+        Component(int[] cells, Counts counts) {
+            this.cells = cells;
+            this.counts = counts;
+        }
+    }
+
+    // A part's cells and the numbers on them, equal keys count the same
+    private static class Key {
+        final int[] data;
+        final int hash;
+
+        Key(int[] data) {
+            this.data = data;
+            hash = Arrays.hashCode(data);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(data, ((Key) o).data);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    public Solver(Board board) {
+        this.board = board;
+        rows = board.getRows();
+        cols = board.getCols();
+        size = rows * cols;
+        state = new byte[size];
+        inWork = new boolean[size];
+        isTouched = new boolean[size];
+        compOf = new Component[size];
+        slot = new int[size];
+        Arrays.fill(slot, -1);
+        unknown = size;
+        minesLeft = board.getConfig().mines;
+        for (int i = 0; i < size; i++)
+            if (board.isSeen(i)) open(i);
+    }
+
+    // Call after a reveal or chord with the cells it opened
+    public void update(CellBuffer opened) {
+        for (int k = 0; k < opened.size(); k++) {
+            int i = opened.get(k);
+            if (board.isSeen(i) && state[i] != OPEN) open(i);
+        }
+    }
+
+    private void open(int i) {
+        if (state[i] == UNKNOWN) unknown--;
+        // A deduced mine never opens unless the game is lost
+        else if (state[i] == MINE) minesLeft++;
+        state[i] = OPEN;
+        drop(i);
+        touchAround(i);
+    }
+
+    // Runs every rule until none finds anything new
+    public void solve() {
+        do {
+            propagate();
+            enumerate();
+        } while (workHead < work.size());
+    }
+
+    // A hidden cell proven safe, or -1 if none is known. Call solve first.
+    public int findSafe() {
+        while (safeHead < safe.size() && state[safe.get(safeHead)] != SAFE) safeHead++;
+        return safeHead < safe.size() ? safe.get(safeHead) : -1;
+    }
+
+    public boolean isSafe(int i) {
+        return state[i] == SAFE;
+    }
+
+    public boolean isMine(int i) {
+        return state[i] == MINE;
+    }
+
+    // Open numbers around a changed cell, with the cell itself
+    private void touchAround(int i) {
+        int r = i / cols, c = i % cols;
+        for (int nr = Math.max(0, r - 1); nr <= Math.min(rows - 1, r + 1); nr++)
+            for (int nc = Math.max(0, c - 1); nc <= Math.min(cols - 1, c + 1); nc++) {
+                int j = nr * cols + nc;
+                if (!isNumber(j)) continue;
+                if (!inWork[j]) {
+                    inWork[j] = true;
+                    work.add(j);
+                }
+                if (!isTouched[j]) {
+                    isTouched[j] = true;
+                    touched.add(j);
+                }
+            }
+    }
+
+    private boolean isNumber(int i) {
+        return state[i] == OPEN && !board.isMine(i) && board.getAdjacent(i) > 0;
+    }
+
+    private void mark(int i, byte s) {
+        if (state[i] != UNKNOWN) return;
+        state[i] = s;
+        unknown--;
+        if (s == MINE) minesLeft--;
+        else safe.add(i);
+        drop(i);
+        touchAround(i);
+    }
+
+    // Forgets the part holding this cell, its other cells go back to be regrouped
+    private void drop(int i) {
+        Component comp = compOf[i];
+        if (comp == null || !comp.alive) return;
+        comp.alive = false;
+        for (int x : comp.cells) {
+            compOf[x] = null;
+            if (state[x] == UNKNOWN) loose.add(x);
+        }
+    }
+
+    // Mines around a number still to be found, and its undecided neighbours
+    private int need(int i, int[] around) {
+        int r = i / cols, c = i % cols;
+        int need = board.getAdjacent(i), n = 0;
+        for (int nr = Math.max(0, r - 1); nr <= Math.min(rows - 1, r + 1); nr++)
+            for (int nc = Math.max(0, c - 1); nc <= Math.min(cols - 1, c + 1); nc++) {
+                int j = nr * cols + nc;
+                if (state[j] == MINE) need--;
+                else if (state[j] == UNKNOWN) around[n++] = j;
+            }
+        around[8] = n;
+        return need;
+    }
+
+    private void propagate() {
+        int[] a = new int[9], b = new int[9];
+        while (workHead < work.size()) {
+            int i = work.get(workHead++);
+            inWork[i] = false;
+            int needA = need(i, a), na = a[8];
+            if (na == 0) continue;
+            if (needA == 0 || needA == na) {
+                for (int k = 0; k < na; k++) mark(a[k], needA == 0 ? SAFE : MINE);
+                continue;
+            }
+            // Pairs: numbers up to two cells away may share neighbours with this one
+            int r = i / cols, c = i % cols;
+            for (int nr = Math.max(0, r - 2); nr <= Math.min(rows - 1, r + 2); nr++)
+                for (int nc = Math.max(0, c - 2); nc <= Math.min(cols - 1, c + 2); nc++) {
+                    int j = nr * cols + nc;
+                    if (j == i || !isNumber(j)) continue;
+                    int needB = need(j, b), nb = b[8];
+                    if (nb == 0 || !pair(a, needA, b, needB)) continue;
+                    // Something got marked, this number's view is stale now
+                    needA = need(i, a);
+                    na = a[8];
+                    if (na == 0) break;
+                }
+        }
+        if (work.size() > 0 && workHead == work.size()) {
+            work.clear();
+            workHead = 0;
+        }
+    }
+
+    // If A needs |A-B| more mines than B, all of A-B are mines and all of B-A
+    // safe, since the shared cells can hold no more than B needs. Same the
+    // other way round.
+    private boolean pair(int[] a, int needA, int[] b, int needB) {
+        int na = a[8], nb = b[8];
+        int onlyA = 0, onlyB = 0, shared = 0;
+        for (int x = 0; x < na; x++) if (contains(b, nb, a[x])) shared++;
+        if (shared == 0) return false;
+        onlyA = na - shared;
+        onlyB = nb - shared;
+        if (needA - needB == onlyA && onlyA + onlyB > 0) {
+            split(a, na, b, nb);
+            return true;
+        }
+        if (needB - needA == onlyB && onlyA + onlyB > 0) {
+            split(b, nb, a, na);
+            return true;
+        }
+        return false;
+    }
+
+    // Cells only in `mines` are mines, cells only in `safes` are safe
+    private void split(int[] mines, int nm, int[] safes, int ns) {
+        for (int x = 0; x < nm; x++) if (!contains(safes, ns, mines[x])) mark(mines[x], MINE);
+        for (int x = 0; x < ns; x++) if (!contains(mines, nm, safes[x])) mark(safes[x], SAFE);
+    }
+
+    private static boolean contains(int[] cells, int n, int v) {
+        for (int x = 0; x < n; x++) if (cells[x] == v) return true;
+        return false;
+    }
+
+    // Regroups the frontier near touched numbers, counts the new parts and
+    // marks what holds in every arrangement that fits the mines left
+    private void enumerate() {
+        int[] around = new int[9];
+        for (int t = 0; t < touched.size(); t++) {
+            int i = touched.get(t);
+            isTouched[i] = false;
+            if (!isNumber(i)) continue;
+            need(i, around);
+            for (int k = 0; k < around[8]; k++) {
+                drop(around[k]);
+                loose.add(around[k]);
+            }
+        }
+        touched.clear();
+
+        List<Component> fresh = new ArrayList<>();
+        for (int k = 0; k < loose.size(); k++) {
+            int x = loose.get(k);
+            if (state[x] != UNKNOWN || compOf[x] != null || !onFrontier(x)) continue;
+            Component comp = build(x);
+            comps.add(comp);
+            fresh.add(comp);
+        }
+        loose.clear();
+        comps.removeIf(comp -> !comp.alive);
+
+        int total = 0, minSum = 0, maxSum = 0;
+        for (Component comp : comps) {
+            total += comp.cells.length;
+            minSum += comp.counts == null ? 0 : comp.counts.minMines();
+            maxSum += comp.counts == null ? comp.cells.length : comp.counts.maxMines();
+        }
+        // Marking below moves these, so take them first
+        int interior = unknown - total, left = minesLeft;
+        if (left - maxSum >= 0 && left - minSum <= interior) {
+            // The mine count rules nothing out, each part stands alone
+            for (Component comp : fresh) decide(comp, null);
+            if (interior > 0 && minSum == maxSum && (left == minSum || left - minSum == interior))
+                markInterior(left == minSum ? SAFE : MINE);
+        } else if (maxSum <= MAX_GLOBAL) {
+            global(left, interior);
+        } else {
+            // Too many to weigh against the total, what each part proves alone
+            // still holds. A part that changes is rebuilt and comes back fresh.
+            for (Component comp : fresh) decide(comp, null);
+        }
+    }
+
+    private boolean onFrontier(int x) {
+        int r = x / cols, c = x % cols;
+        for (int nr = Math.max(0, r - 1); nr <= Math.min(rows - 1, r + 1); nr++)
+            for (int nc = Math.max(0, c - 1); nc <= Math.min(cols - 1, c + 1); nc++)
+                if (isNumber(nr * cols + nc)) return true;
+        return false;
+    }
+
+    // Flood from one frontier cell through the numbers that tie cells together,
+    // then again from the lowest cell found. The second order only depends on
+    // the part itself, and keeps neighbours close for the search.
+    private Component build(int seed) {
+        int low = seed;
+        for (int x : flood(seed)) low = Math.min(low, x);
+        int[] cells = flood(low);
+        Component comp = new Component(cells, count(cells));
+        for (int x : cells) compOf[x] = comp;
+        return comp;
+    }
+
+    private int[] flood(int seed) {
+        queue.clear();
+        queue.add(seed);
+        slot[seed] = 0;
+        int[] around = new int[9];
+        for (int head = 0; head < queue.size(); head++) {
+            int x = queue.get(head);
+            int r = x / cols, c = x % cols;
+            for (int nr = Math.max(0, r - 1); nr <= Math.min(rows - 1, r + 1); nr++)
+                for (int nc = Math.max(0, c - 1); nc <= Math.min(cols - 1, c + 1); nc++) {
+                    int j = nr * cols + nc;
+                    if (!isNumber(j)) continue;
+                    need(j, around);
+                    for (int k = 0; k < around[8]; k++) {
+                        int y = around[k];
+                        if (slot[y] >= 0) continue;
+                        slot[y] = 0;
+                        queue.add(y);
+                    }
+                }
+        }
+        int[] cells = queue.toArray();
+        for (int x : cells) slot[x] = -1;
+        return cells;
+    }
+
+    // Counts every arrangement of mines on the part that satisfies its numbers
+    private Counts count(int[] cells) {
+        if (cells.length > MAX_COMPONENT) return null;
+        Part part = part(cells);
+        Key key = new Key(part.key());
+        if (memo.containsKey(key)) return memo.get(key);
+        Counts counts = part.count(NODE_BUDGET, Long.MAX_VALUE);
+        memo.put(key, counts);
+        return counts;
+    }
+
+    // The numbers on a part, each with the part cells around it. Numbers are
+    // found in cell order, which is fixed for a given part.
+    Part part(int[] cells) {
+        int n = cells.length;
+        for (int j = 0; j < n; j++) slot[cells[j]] = j;
+        CellBuffer numbers = new CellBuffer();
+        List<int[]> numberCells = new ArrayList<>();
+        CellBuffer needs = new CellBuffer();
+        int[] around = new int[9];
+        for (int x : cells) {
+            int r = x / cols, c = x % cols;
+            for (int nr = Math.max(0, r - 1); nr <= Math.min(rows - 1, r + 1); nr++)
+                for (int nc = Math.max(0, c - 1); nc <= Math.min(cols - 1, c + 1); nc++) {
+                    int j = nr * cols + nc;
+                    if (!isNumber(j) || contains(numbers, j)) continue;
+                    int need = need(j, around);
+                    int[] in = new int[around[8]];
+                    for (int k = 0; k < in.length; k++) in[k] = slot[around[k]];
+                    numbers.add(j);
+                    numberCells.add(in);
+                    needs.add(need);
+                }
+        }
+        for (int x : cells) slot[x] = -1;
+        return new Part(cells, numbers.toArray(), needs.toArray(), numberCells);
+    }
+
+    private static boolean contains(CellBuffer buf, int v) {
+        for (int k = 0; k < buf.size(); k++) if (buf.get(k) == v) return true;
+        return false;
+    }
+
+    // Marks cells that are safe, or mined, under every mine total in `allowed`
+    private void decide(Component comp, boolean[] allowed) {
+        Counts counts = comp.counts;
+        if (counts == null) return;
+        for (int j = 0; j < comp.cells.length; j++) {
+            boolean canMine = false, canSafe = false;
+            for (int k = 0; k < counts.ways.length; k++) {
+                if (counts.ways[k] == 0 || (allowed != null && !allowed[k])) continue;
+                if (counts.cellWays[j][k] > 0) canMine = true;
+                if (counts.cellWays[j][k] < counts.ways[k]) canSafe = true;
+            }
+            if (canMine != canSafe) mark(comp.cells[j], canMine ? MINE : SAFE);
+        }
+    }
+
+    // The mines left must add up: a part may only take a count that the
+    // others and the cells off the frontier can make up to the total
+    private void global(int left, int interior) {
+        List<Component> all = new ArrayList<>(comps);
+        int parts = all.size();
+        boolean[] sums = reach(all, -1);
+        boolean anyRest = false, allZero = true, allFull = true;
+        for (int s = 0; s < sums.length; s++) {
+            int rest = left - s;
+            if (!sums[s] || rest < 0 || rest > interior) continue;
+            anyRest = true;
+            if (rest != 0) allZero = false;
+            if (rest != interior) allFull = false;
+        }
+        if (!anyRest) return;
+        for (int p = 0; p < parts; p++) {
+            Component comp = all.get(p);
+            if (comp.counts == null) continue;
+            boolean[] others = reach(all, p);
+            boolean[] allowed = new boolean[comp.cells.length + 1];
+            for (int k = 0; k < allowed.length; k++)
+                for (int s = 0; s < others.length && !allowed[k]; s++) {
+                    int rest = left - k - s;
+                    allowed[k] = others[s] && rest >= 0 && rest <= interior;
+                }
+            decide(comp, allowed);
+        }
+        if (interior > 0 && (allZero || allFull)) markInterior(allZero ? SAFE : MINE);
+    }
+
+    // Which mine totals the parts can make together, leaving one out
+    private static boolean[] reach(List<Component> all, int skip) {
+        int max = 0;
+        for (int p = 0; p < all.size(); p++) if (p != skip) max += all.get(p).cells.length;
+        boolean[] sums = new boolean[max + 1];
+        sums[0] = true;
+        int top = 0;
+        for (int p = 0; p < all.size(); p++) {
+            if (p == skip) continue;
+            Component comp = all.get(p);
+            int n = comp.cells.length;
+            boolean[] next = new boolean[max + 1];
+            for (int s = 0; s <= top; s++) {
+                if (!sums[s]) continue;
+                for (int k = 0; k <= n; k++)
+                    if (comp.counts == null || comp.counts.ways[k] > 0) next[s + k] = true;
+            }
+            sums = next;
+            top += n;
+        }
+        return sums;
+    }
+
+    private void markInterior(byte s) {
+        for (int i = 0; i < size; i++)
+            if (state[i] == UNKNOWN && compOf[i] == null && !onFrontier(i)) mark(i, s);
+    }
+}
@@ -0,0 +1,37 @@
+package com.yifen9.jiraiboxsweeper.engine;
+
+import com.yifen9.jiraiboxsweeper.model.Board;
+import com.yifen9.jiraiboxsweeper.model.Config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameSessionTest {
+    @Test
+    void replacedBoardKeepsTheClockTheLogAndTheFlags() {
+        long[] now = {0};
+        GameSession session = new GameSession(new Board(Config.EXPERT, 1), () -> now[0]);
+        now[0] = 2_000_000_000L;
+        session.flag(0, 0);
+        // The no-guess search runs between the click and the reveal
+        now[0] = 5_000_000_000L;
+        Board next = new Board(Config.EXPERT, 2);
+        session.replaceBoard(next);
+        assertSame(next, session.getBoard());
+        assertTrue(next.isFlagged(0));
+        session.reveal(8, 15);
+
+        assertEquals(5000, session.getElapsedMillis());
+        MoveLog.Reader moves = new MoveLog.Reader(session.getLog().toBytes());
+        assertTrue(moves.next());
+        assertEquals(MoveLog.FLAG, moves.action);
+        assertEquals(2000, moves.delta);
+        assertTrue(moves.next());
+        assertEquals(MoveLog.REVEAL, moves.action);
+        assertEquals(8 * 30 + 15, moves.cell);
+        assertEquals(3000, moves.delta);
+
+        assertThrows(IllegalStateException.class, () -> session.replaceBoard(new Board(Config.EXPERT, 3)));
+    }
+}
@@ -0,0 +1,70 @@
+package com.yifen9.jiraiboxsweeper.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoveLogTest {
+    @Test
+    void movesReadBackAcrossVarintLengths() {
+        // Cells and gaps either side of every varint length that matters
+        int[] cells = {0, 1, 31, 32, 4095, 4096, 3_999_999, Integer.MAX_VALUE};
+        long[] gaps = {0, 1, 127, 128, 16_383, 16_384, 1L << 35, Long.MAX_VALUE / 2};
+        MoveLog log = new MoveLog();
+        long at = 0;
+        for (int k = 0; k < cells.length; k++) {
+            at += gaps[k];
+            log.add(cells[k], k % 3, at);
+        }
+
+        byte[] bytes = MoveLog.decode(MoveLog.encode(log.toBytes()));
+        assertArrayEquals(log.toBytes(), bytes);
+        MoveLog.Reader moves = new MoveLog.Reader(bytes);
+        for (int k = 0; k < cells.length; k++) {
+            assertTrue(moves.next());
+            assertEquals(cells[k], moves.cell);
+            assertEquals(k % 3, moves.action);
+            assertEquals(gaps[k], moves.delta);
+        }
+        assertFalse(moves.next());
+        // A one byte move is two one byte varints
+        MoveLog small = new MoveLog();
+        small.add(31, MoveLog.EXPAND, 127);
+        assertEquals(2, small.toBytes().length);
+    }
+
+    @Test
+    void timeGoingBackwardsIsRefused() {
+        MoveLog log = new MoveLog();
+        log.add(5, MoveLog.REVEAL, 1000);
+        assertThrows(IllegalArgumentException.class, () -> log.add(6, MoveLog.REVEAL, 999));
+        // The refused move left nothing behind
+        MoveLog.Reader moves = new MoveLog.Reader(log.toBytes());
+        assertTrue(moves.next());
+        assertFalse(moves.next());
+
+        log.clear();
+        assertTrue(log.isEmpty());
+        log.add(6, MoveLog.REVEAL, 0);
+    }
+
+    @Test
+    void brokenLogsAreRejectedByTheReader() {
+        // Cut inside the gap of the only move
+        MoveLog log = new MoveLog();
+        log.add(300, MoveLog.REVEAL, 300);
+        byte[] cut = Arrays.copyOf(log.toBytes(), log.toBytes().length - 1);
+        assertThrows(IllegalArgumentException.class, () -> new MoveLog.Reader(cut).next());
+
+        // Eleven continuation bytes are more than any long holds
+        byte[] tooLong = new byte[12];
+        Arrays.fill(tooLong, (byte) 0x80);
+        assertThrows(IllegalArgumentException.class, () -> new MoveLog.Reader(tooLong).next());
+
+        // A cell past the int range
+        byte[] wide = {(byte) 0xFC, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x3F, 0};
+        assertThrows(IllegalArgumentException.class, () -> new MoveLog.Reader(wide).next());
+    }
+}
@@ -0,0 +1,74 @@
+package com.yifen9.jiraiboxsweeper.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoardTest {
+    @Test
+    void firstClickOnAFlagPlacesNothing() {
+        Board board = new Board(Config.EXPERT, 1);
+        assertTrue(board.flag(0, 0));
+        assertFalse(board.reveal(0, 0));
+        assertFalse(board.isPlaced());
+        assertTrue(board.getChanges().isEmpty());
+
+        // The real first click still gets its safe block
+        for (long seed = 0; seed < 200; seed++) {
+            board.reset(seed);
+            board.flag(3, 3);
+            board.reveal(3, 3);
+            assertFalse(board.reveal(8, 20));
+            for (int r = 7; r <= 9; r++)
+                for (int c = 19; c <= 21; c++) assertFalse(board.isMine(r * 30 + c), "seed " + seed);
+        }
+    }
+
+    // Mines and neighbour counts of a board after its first click
+    private static String layout(Board board, int r, int c) {
+        board.reveal(r, c);
+        int size = board.getRows() * board.getCols();
+        StringBuilder sb = new StringBuilder(size);
+        for (int i = 0; i < size; i++) sb.append(board.isMine(i) ? '*' : (char) ('0' + board.getAdjacent(i)));
+        return sb.toString();
+    }
+
+    private static String prepared(Config config, long seed, int r, int c) {
+        Board board = new Board(config, seed);
+        board.prepare();
+        return layout(board, r, c);
+    }
+
+    @Test
+    void preparedBoardMatchesPlainPlacement() {
+        for (Config config : new Config[] {Config.BEGINNER, Config.INTERMEDIATE, Config.EXPERT}) {
+            int r = config.rows / 2, c = config.cols / 2;
+            for (long seed = 0; seed < 100; seed++) {
+                String plain = layout(new Board(config, seed), r, c);
+                assertEquals(plain, prepared(config, seed, r, c), config + " seed " + seed);
+                // A click the draw was not made for places the usual way
+                assertEquals(layout(new Board(config, seed), 0, 0), prepared(config, seed, 0, 0));
+            }
+        }
+
+        // A reset drops what was drawn for the old seed
+        Board board = new Board(Config.EXPERT, 1);
+        board.prepare();
+        board.reset(2);
+        assertEquals(layout(new Board(Config.EXPERT, 2), 8, 15), layout(board, 8, 15));
+    }
+
+    @Test
+    void tooDenseBoardSparesOnlyTheClickedCell() {
+        // 20 mines in 25 cells leave no room for a safe block
+        Config dense = new Config(5, 5, 20);
+        for (long seed = 0; seed < 100; seed++) {
+            for (int[] click : new int[][] {{2, 2}, {0, 0}, {4, 1}}) {
+                String plain = layout(new Board(dense, seed), click[0], click[1]);
+                assertEquals(plain, prepared(dense, seed, click[0], click[1]), "seed " + seed);
+                assertEquals(20, plain.chars().filter(ch -> ch == '*').count());
+                assertNotEquals('*', plain.charAt(click[0] * 5 + click[1]));
+            }
+        }
+    }
+}
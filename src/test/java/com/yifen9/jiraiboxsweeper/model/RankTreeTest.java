@@ -0,0 +1,58 @@
+package com.yifen9.jiraiboxsweeper.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RankTreeTest {
+    // Faster times in a sorted list, the first index not below key
+    private static int countLess(List<Long> sorted, long key) {
+        int lo = 0, hi = sorted.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted.get(mid) < key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    @Test
+    void ranksMatchASortedListThroughInsertsAndRemoves() {
+        SplittableRandom rnd = new SplittableRandom(7);
+        RankTree tree = new RankTree();
+        List<Long> sorted = new ArrayList<>();
+        for (int round = 0; round < 3; round++) {
+            // A narrow range of times, so ties come up all the time
+            for (int op = 0; op < 20_000; op++) {
+                long t = rnd.nextInt(2000);
+                if (rnd.nextInt(10) < 7) {
+                    tree.add(t);
+                    sorted.add(countLess(sorted, t), t);
+                } else {
+                    int at = countLess(sorted, t);
+                    boolean present = at < sorted.size() && sorted.get(at) == t;
+                    if (present) sorted.remove(at);
+                    assertEquals(present, tree.remove(t), "remove " + t);
+                }
+                assertEquals(sorted.size(), tree.size());
+                long q = rnd.nextInt(2100) - 50;
+                assertEquals(countLess(sorted, q) + 1, tree.rank(q), "rank " + q);
+            }
+            for (long q = -1; q <= 2000; q++) assertEquals(countLess(sorted, q), tree.countLess(q));
+
+            // Emptied one at a time, then reused after a clear
+            Collections.shuffle(sorted, new Random(round));
+            for (long t : sorted) assertTrue(tree.remove(t));
+            assertEquals(0, tree.size());
+            assertFalse(tree.remove(0));
+            sorted.clear();
+            tree.clear();
+        }
+    }
+}
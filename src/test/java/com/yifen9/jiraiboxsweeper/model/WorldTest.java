@@ -0,0 +1,54 @@
+package com.yifen9.jiraiboxsweeper.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorldTest {
+    private static final long SEED = 11;
+    private static final double DENSITY = 0.2;
+
+    // The same moves on a world that keeps everything and one that keeps a
+    // single chunk decoded, so every other chunk is packed and restored
+    private static void play(World w) {
+        assertFalse(w.reveal(0, 0));
+        w.flag(3, 70);
+        w.flag(-40, -5);
+        w.flag(-41, -5);
+        w.flag(-41, -5);
+        // Flags alone in a far chunk, nothing opened there
+        w.flag(5000, -5000);
+        for (int x = 60; x < 200; x += 7) if (!w.isMine(x, 1)) w.reveal(x, 1);
+        for (int y = -100; y < 0; y += 9) if (!w.isMine(-3, y)) w.reveal(-3, y);
+    }
+
+    @Test
+    void evictedChunksComeBackWithTheirSeenAndFlagBits() {
+        World all = new World(SEED, DENSITY, 1000);
+        World one = new World(SEED, DENSITY, 1);
+        play(all);
+        play(one);
+        assertTrue(one.getPackedChunks() > 0);
+        assertEquals(0, all.getPackedChunks());
+        assertEquals(all.getOpened(), one.getOpened());
+        assertEquals(all.getFlagCount(), one.getFlagCount());
+
+        for (int y = -128; y < 128; y++)
+            for (int x = -128; x < 256; x++) {
+                assertEquals(all.isSeen(x, y), one.isSeen(x, y), x + "," + y);
+                assertEquals(all.isFlagged(x, y), one.isFlagged(x, y), x + "," + y);
+            }
+        assertTrue(one.isFlagged(5000, -5000));
+        assertTrue(one.isFlagged(-40, -5));
+        assertFalse(one.isFlagged(-41, -5));
+        assertTrue(one.getHotChunks() <= 1);
+
+        // A restored chunk plays on like one that never left
+        for (int x = 200; x < 260; x += 5) {
+            if (all.isMine(x, 1)) continue;
+            assertFalse(one.reveal(x, 1));
+            all.reveal(x, 1);
+        }
+        assertEquals(all.getOpened(), one.getOpened());
+    }
+}
@@ -0,0 +1,163 @@
+package com.yifen9.jiraiboxsweeper.service;
+
+import com.yifen9.jiraiboxsweeper.model.Config;
+import com.yifen9.jiraiboxsweeper.service.Firebase.Score;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LeaderboardTest {
+    private static final Config LEVEL = Config.EXPERT;
+
+    // One level of the database, ordered by key like push keys are
+    private final Map<String, Score> db = new ConcurrentSkipListMap<>();
+    private StubServer server;
+    private Leaderboard lb;
+    private int nextKey;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = new StubServer((m, path, query, body) -> answer(path, query));
+        lb = new Leaderboard(new Firebase(server.url()), LEVEL);
+    }
+
+    @AfterEach
+    void stop() {
+        server.close();
+    }
+
+    // Posted by someone, keys sort by posting order
+    private Score post(String name, int time) {
+        Score s = new Score(String.format("k%03d", nextKey++), name, time, nextKey);
+        db.put(s.key, s);
+        return s;
+    }
+
+    // The few REST queries the client makes, filtered the way the database does
+    private StubServer.Reply answer(String path, String query) {
+        if (!path.equals("/scoresMs/" + LEVEL.key() + ".json")) return new StubServer.Reply(404, "{}");
+        Map<String, String> q = new HashMap<>();
+        if (query != null) for (String p : query.split("&")) q.put(p.substring(0, p.indexOf('=')), p.substring(p.indexOf('=') + 1));
+        List<Score> out = new ArrayList<>(db.values());
+        if ("\"time\"".equals(q.get("orderBy"))) {
+            out.sort(Firebase.BY_TIME);
+            int from = Integer.parseInt(q.get("startAt"));
+            out.removeIf(s -> s.time < from);
+        } else if (q.containsKey("startAt")) {
+            String from = q.get("startAt").replace("\"", "");
+            out.removeIf(s -> s.key.compareTo(from) < 0);
+        }
+        if (q.containsKey("limitToFirst")) out = out.subList(0, Math.min(out.size(), Integer.parseInt(q.get("limitToFirst"))));
+        if (q.containsKey("limitToLast")) out = out.subList(Math.max(0, out.size() - Integer.parseInt(q.get("limitToLast"))), out.size());
+        if (out.isEmpty()) return new StubServer.Reply(200, "null");
+        JSONObject o = new JSONObject();
+        for (Score s : out) o.put(s.key, Firebase.toJson(s));
+        return new StubServer.Reply(200, o.toString());
+    }
+
+    private static List<String> names(List<Score> scores) {
+        List<String> names = new ArrayList<>();
+        for (Score s : scores) names.add(s.name);
+        return names;
+    }
+
+    // What a call added, which comes in the server's order
+    private static Set<String> added(List<Score> scores) {
+        return new HashSet<>(names(scores));
+    }
+
+    @Test
+    void emptyLevelLoadsNothingThenPicksUpTheFirstScore() throws IOException {
+        assertTrue(lb.refresh(5).isEmpty());
+        assertFalse(lb.hasMore());
+        assertTrue(lb.refresh(5).isEmpty());
+
+        post("first", 9000);
+        assertEquals(Set.of("first"), added(lb.refresh(5)));
+        assertEquals(List.of("first"), names(lb.getScores()));
+    }
+
+    @Test
+    void syncFetchesOnlyWhatWasPostedAfterTheLastSeenKey() throws IOException {
+        for (int k = 0; k < 10; k++) post("p" + k, 10_000 + k * 1000);
+        assertEquals(Set.of("p0", "p1", "p2", "p3", "p4"), added(lb.refresh(5)));
+        assertTrue(lb.hasMore());
+
+        // One fast enough for the loaded page, one slower than all of it
+        post("fast", 10_500);
+        post("slow", 99_000);
+        server.requests.clear();
+        assertEquals(Set.of("fast"), added(lb.sync()));
+        StubServer.Request req = server.requests.get(0);
+        assertTrue(req.query.contains("orderBy=\"$key\""));
+        assertTrue(req.query.contains("startAt=\"k009\""), req.query);
+
+        // Starts from the newest key seen, which comes back but is not new
+        server.requests.clear();
+        assertTrue(lb.sync().isEmpty());
+        assertTrue(server.requests.get(0).query.contains("startAt=\"k011\""), server.requests.get(0).query);
+        assertEquals(List.of("p0", "fast", "p1", "p2", "p3", "p4"), names(lb.getScores()));
+    }
+
+    @Test
+    void pagesOverlapOnTiesWithoutDuplicates() throws IOException {
+        post("a", 1000);
+        post("b", 2000);
+        post("c", 2000);
+        post("d", 2000);
+        post("e", 3000);
+        post("f", 4000);
+        assertEquals(Set.of("a", "b", "c"), added(lb.refresh(3)));
+        // Asked again from 2000 with the two ties on top, only the rest is new
+        assertEquals(Set.of("d", "e", "f"), added(lb.loadMore(3)));
+        // A full page, so one more look finds the end
+        assertTrue(lb.loadMore(3).isEmpty());
+        assertFalse(lb.hasMore());
+        assertEquals(List.of("a", "b", "c", "d", "e", "f"), names(lb.getScores()));
+    }
+
+    @Test
+    void failedFirstPageIsLoadedAgainOnTheNextRefresh() throws IOException {
+        post("a", 1000);
+        post("b", 2000);
+        StubServer.Handler db = server.handler;
+        server.handler = (m, path, query, body) -> query != null && query.contains("orderBy=\"time\"")
+                ? new StubServer.Reply(500, "{\"error\":\"down\"}") : db.handle(m, path, query, body);
+        assertThrows(IOException.class, () -> lb.refresh(5));
+        assertTrue(lb.getScores().isEmpty());
+
+        server.handler = db;
+        assertEquals(Set.of("a", "b"), added(lb.refresh(5)));
+        post("c", 1500);
+        assertEquals(Set.of("c"), added(lb.refresh(5)));
+        assertEquals(List.of("a", "c", "b"), names(lb.getScores()));
+    }
+
+    @Test
+    void ownScoreOfferedEarlyIsNotAddedTwiceBySync() throws IOException {
+        post("a", 1000);
+        post("b", 5000);
+        lb.refresh(10);
+
+        Score mine = new Score("k100", "me", 3000, 1);
+        assertEquals(Set.of("me"), added(lb.offer(mine)));
+        db.put(mine.key, mine);
+        Score other = post("other", 2000);
+        assertEquals(Set.of("other"), added(lb.sync()));
+        assertEquals(List.of("a", "other", "me", "b"), names(lb.getScores()));
+        assertTrue(lb.offer(other).isEmpty());
+    }
+}
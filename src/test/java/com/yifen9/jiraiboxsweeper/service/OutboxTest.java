@@ -0,0 +1,149 @@
+package com.yifen9.jiraiboxsweeper.service;
+
+import com.yifen9.jiraiboxsweeper.model.Config;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboxTest {
+    private static final StubServer.Reply OK = new StubServer.Reply(200, "null");
+    private static final StubServer.Reply DOWN = new StubServer.Reply(503, "{\"error\":\"unavailable\"}");
+
+    @TempDir
+    Path dir;
+
+    private final Network network = new Network();
+    private final List<AutoCloseable> open = new ArrayList<>();
+
+    @AfterEach
+    void closeAll() throws Exception {
+        for (AutoCloseable c : open) c.close();
+        network.close();
+    }
+
+    private StubServer server(StubServer.Handler handler) throws IOException {
+        StubServer s = new StubServer(handler);
+        open.add(s);
+        return s;
+    }
+
+    private Outbox outbox(StubServer server) throws IOException {
+        Outbox o = new Outbox(new Firebase(server.url()), network, dir.resolve("outbox.log"));
+        open.add(o::close);
+        return o;
+    }
+
+    // Scores left behind by an earlier run whose server never answered
+    private List<Firebase.Score> queueWhileDown(String... names) throws Exception {
+        StubServer down = server((m, p, q, b) -> DOWN);
+        Outbox o = outbox(down);
+        List<Firebase.Score> scores = new ArrayList<>();
+        for (String name : names) scores.add(o.add(Config.EXPERT, name, 12_345, 42, new byte[] {1, 2, 3}));
+        StubServer.await(() -> down.count(503) > 0, 5000);
+        o.close();
+        down.close();
+        return scores;
+    }
+
+    @Test
+    void pendingScoresSurviveReopenAndGoOutInOnePatch() throws Exception {
+        List<Firebase.Score> scores = queueWhileDown("alice", "bob", "carol");
+        assertEquals(3, Outbox.read(dir.resolve("outbox.log")).size());
+
+        StubServer up = server((m, p, q, b) -> OK);
+        Outbox o = outbox(up);
+        assertEquals(3, o.size());
+        StubServer.await(() -> o.size() == 0, 5000);
+
+        assertEquals(1, up.requests.size());
+        StubServer.Request req = up.requests.get(0);
+        assertEquals("PATCH", req.method);
+        assertEquals("/.json", req.path);
+        JSONObject body = new JSONObject(req.body);
+        assertEquals(6, body.length());
+        for (Firebase.Score s : scores) {
+            JSONObject score = body.getJSONObject("scoresMs/" + Config.EXPERT.key() + "/" + s.key);
+            assertEquals(s.name, score.getString("name"));
+            assertEquals(12_345, score.getInt("time"));
+            assertEquals("2a", score.getString("seed"));
+            assertTrue(body.has("replaysMs/" + Config.EXPERT.key() + "/" + s.key));
+        }
+        assertTrue(Outbox.read(dir.resolve("outbox.log")).isEmpty());
+    }
+
+    @Test
+    void retriesWithBackoffUntilTheServerRecovers() throws Exception {
+        AtomicBoolean down = new AtomicBoolean(true);
+        StubServer s = server((m, p, q, b) -> down.get() ? DOWN : OK);
+        Outbox o = outbox(s);
+        o.add(Config.BEGINNER, "dave", 5000, 7, null);
+        StubServer.await(() -> s.count(503) >= 3, 10_000);
+        down.set(false);
+        StubServer.await(() -> o.size() == 0, 10_000);
+
+        assertEquals(1, s.count(200));
+        // The first try is at once, then 1 s and 2 s apart
+        List<StubServer.Request> reqs = s.requests;
+        assertEquals(503, reqs.get(0).status);
+        assertEquals(200, reqs.get(reqs.size() - 1).status);
+        assertTrue(reqs.size() >= 4);
+        long first = reqs.get(1).atMillis - reqs.get(0).atMillis, second = reqs.get(2).atMillis - reqs.get(1).atMillis;
+        assertTrue(first >= 900 && first < 1900, "first retry after " + first + " ms");
+        assertTrue(second >= 1900 && second < 3900, "second retry after " + second + " ms");
+    }
+
+    @Test
+    void backoffDoesNotDelayANewScore() throws Exception {
+        AtomicBoolean down = new AtomicBoolean(true);
+        StubServer s = server((m, p, q, b) -> down.get() ? DOWN : OK);
+        Outbox o = outbox(s);
+        o.add(Config.BEGINNER, "erin", 5000, 7, null);
+        // Three failures in, the next retry is 4 s away
+        StubServer.await(() -> s.count(503) >= 3, 10_000);
+        down.set(false);
+        long t0 = System.currentTimeMillis();
+        o.add(Config.BEGINNER, "frank", 6000, 8, null);
+        StubServer.await(() -> o.size() == 0, 10_000);
+        assertTrue(System.currentTimeMillis() - t0 < 2000, "waited out the backoff");
+    }
+
+    @Test
+    void refusedScoreIsSetAsideWithoutBlockingTheRest() throws Exception {
+        queueWhileDown("gina", "hank", "bad", "ivan", "jill");
+        List<String> accepted = new CopyOnWriteArrayList<>();
+        StubServer s = server((m, p, q, b) -> {
+            if (b.contains("\"bad\"")) return new StubServer.Reply(400, "{\"error\":\"Invalid data\"}");
+            JSONObject body = new JSONObject(b);
+            for (String path : body.keySet())
+                if (path.startsWith("scoresMs/")) accepted.add(body.getJSONObject(path).getString("name"));
+            return OK;
+        });
+        Outbox o = outbox(s);
+        StubServer.await(() -> o.size() == 0, 5000);
+
+        assertEquals(List.of("gina", "hank", "ivan", "jill"), accepted.stream().sorted().toList());
+        List<Outbox.Entry> rejected = Outbox.read(dir.resolve("outbox.log.rejected"));
+        assertEquals(1, rejected.size());
+        assertEquals("bad", rejected.get(0).score.name);
+        assertTrue(Outbox.read(dir.resolve("outbox.log")).isEmpty());
+        // Halved down to the one refused score, which is sent alone only once
+        assertEquals(5, scoreCount(s.requests.get(0).body));
+        long alone = s.requests.stream().filter(r -> r.status == 400 && scoreCount(r.body) == 1).count();
+        assertEquals(1, alone);
+    }
+
+    private static long scoreCount(String patch) {
+        return new JSONObject(patch).keySet().stream().filter(k -> k.startsWith("scoresMs/")).count();
+    }
+}
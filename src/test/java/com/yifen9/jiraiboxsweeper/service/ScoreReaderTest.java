@@ -0,0 +1,99 @@
+package com.yifen9.jiraiboxsweeper.service;
+
+import com.yifen9.jiraiboxsweeper.service.Firebase.Score;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScoreReaderTest {
+    // Hands the body over one byte per read, the way a slow network might
+    private static BufferedSource trickle(String json) {
+        return Okio.buffer(new ForwardingSource(new Buffer().writeUtf8(json)) {
+            @Override
+            public long read(Buffer sink, long byteCount) throws IOException {
+                return super.read(sink, Math.min(byteCount, 1));
+            }
+        });
+    }
+
+    // Every body is read both whole and a byte at a time, with the same result
+    private static List<Score> read(String json) throws IOException {
+        List<Score> whole = new ArrayList<>(), trickled = new ArrayList<>();
+        assertEquals(new ScoreReader(new Buffer().writeUtf8(json)).readAll(whole::add),
+                new ScoreReader(trickle(json)).readAll(trickled::add));
+        assertEquals(whole.size(), trickled.size());
+        for (int k = 0; k < whole.size(); k++) {
+            assertEquals(whole.get(k).key, trickled.get(k).key);
+            assertEquals(whole.get(k).name, trickled.get(k).name);
+            assertEquals(whole.get(k).time, trickled.get(k).time);
+            assertEquals(whole.get(k).seed, trickled.get(k).seed);
+        }
+        return whole;
+    }
+
+    @Test
+    void emptyNodeReadsAsNoScores() throws IOException {
+        assertTrue(read("null").isEmpty());
+        assertTrue(read("  null\n").isEmpty());
+        assertTrue(read("{}").isEmpty());
+        assertTrue(read("{ }").isEmpty());
+    }
+
+    @Test
+    void scoresComeOutInOrderWithTheirFields() throws IOException {
+        List<Score> scores = read("{\"-Nb1\":{\"name\":\"alice\",\"seed\":\"ffffffffffffffff\",\"time\":12345},\n"
+                + "  \"-Nb2\" : { \"time\" : 9000.0 , \"name\" : \"bob\" , \"seed\" : \"2a\" } }");
+        assertEquals(2, scores.size());
+        assertEquals("-Nb1", scores.get(0).key);
+        assertEquals("alice", scores.get(0).name);
+        assertEquals(12_345, scores.get(0).time);
+        assertEquals(-1L, scores.get(0).seed);
+        assertEquals("bob", scores.get(1).name);
+        assertEquals(9000, scores.get(1).time);
+        assertEquals(42, scores.get(1).seed);
+    }
+
+    @Test
+    void escapedNamesAreDecoded() throws IOException {
+        List<Score> scores = read("{\"k1\":{\"name\":\"say \\\"hi\\\"\",\"time\":1},"
+                + "\"k2\":{\"name\":\"back\\\\\",\"time\":2},"
+                + "\"k3\":{\"name\":\"tab\\there\\nline \\/ \\u00e9\\ud83d\\ude00\",\"time\":3},"
+                + "\"k4\":{\"name\":\"été 雷\",\"time\":4}}");
+        assertEquals("say \"hi\"", scores.get(0).name);
+        assertEquals("back\\", scores.get(1).name);
+        assertEquals("tab\there\nline / é😀", scores.get(2).name);
+        assertEquals("été 雷", scores.get(3).name);
+    }
+
+    @Test
+    void missingSeedIsZeroButMissingNameOrTimeIsAnError() throws IOException {
+        assertEquals(0, read("{\"k\":{\"name\":\"old\",\"time\":5}}").get(0).seed);
+        assertThrows(IOException.class, () -> read("{\"k\":{\"time\":5}}"));
+        assertThrows(IOException.class, () -> read("{\"k\":{\"name\":\"x\"}}"));
+        assertThrows(IOException.class, () -> read("{\"k\":{}}"));
+        // Cut off mid page
+        assertThrows(IOException.class, () -> read("{\"k\":{\"name\":\"x\",\"time\":5}"));
+    }
+
+    @Test
+    void unknownNodesInsideAScoreAreSkipped() throws IOException {
+        // Braces and quotes inside strings must not throw the depth count off
+        List<Score> scores = read("{\"a\":{\"name\":\"ann\",\"extra\":{\"list\":[1,{\"x\":\"}]\\\"{\"},[]],\"ok\":true},"
+                + "\"note\":\"{not json\",\"n\":-1.5e3,\"flag\":false,\"nil\":null,\"time\":700},"
+                + "\"b\":{\"name\":\"ben\",\"time\":800,\"replay\":{\"moves\":\"AAEC\"}}}");
+        assertEquals(2, scores.size());
+        assertEquals("ann", scores.get(0).name);
+        assertEquals(700, scores.get(0).time);
+        assertEquals("b", scores.get(1).key);
+        assertEquals(800, scores.get(1).time);
+    }
+}
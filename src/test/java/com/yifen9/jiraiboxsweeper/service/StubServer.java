@@ -0,0 +1,92 @@
+package com.yifen9.jiraiboxsweeper.service;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+// A local stand-in for the database. Every request is recorded, the handler
+// picks the status and body of the answer.
+class StubServer implements AutoCloseable {
+    static class Request {
+        final String method;
+        final String path;
+        // Decoded, null when there is none
+        final String query;
+        final String body;
+        final int status;
+        final long atMillis = System.currentTimeMillis();
+
+        Request(String method, String path, String query, String body, int status) {
+            this.method = method;
+            this.path = path;
+            this.query = query;
+            this.body = body;
+            this.status = status;
+        }
+    }
+
+    static class Reply {
+        final int status;
+        final String body;
+
+        Reply(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    interface Handler {
+        Reply handle(String method, String path, String query, String body);
+    }
+
+    final List<Request> requests = new CopyOnWriteArrayList<>();
+    private final HttpServer server;
+    volatile Handler handler;
+
+    StubServer(Handler handler) throws IOException {
+        this.handler = handler;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", ex -> {
+            String body = new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            String method = ex.getRequestMethod(), path = ex.getRequestURI().getPath(), query = ex.getRequestURI().getQuery();
+            Reply reply = this.handler.handle(method, path, query, body);
+            requests.add(new Request(method, path, query, body, reply.status));
+            byte[] out = reply.body.getBytes(StandardCharsets.UTF_8);
+            ex.sendResponseHeaders(reply.status, out.length);
+            try (OutputStream os = ex.getResponseBody()) {
+                os.write(out);
+            }
+        });
+        server.start();
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    int count(int status) {
+        int n = 0;
+        for (Request r : requests) if (r.status == status) n++;
+        return n;
+    }
+
+    static void await(BooleanSupplier done, long timeoutMs) throws InterruptedException {
+        long end = System.currentTimeMillis() + timeoutMs;
+        while (!done.getAsBoolean()) {
+            if (System.currentTimeMillis() > end) throw new AssertionError("Timed out after " + timeoutMs + " ms");
+            Thread.sleep(10);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
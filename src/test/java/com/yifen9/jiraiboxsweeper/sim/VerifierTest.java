@@ -0,0 +1,116 @@
+package com.yifen9.jiraiboxsweeper.sim;
+
+import com.yifen9.jiraiboxsweeper.engine.MoveLog;
+import com.yifen9.jiraiboxsweeper.model.Board;
+import com.yifen9.jiraiboxsweeper.model.Config;
+import com.yifen9.jiraiboxsweeper.sim.Verifier.Verdict;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VerifierTest {
+    private static final long SEED = 42;
+
+    private final Board board = new Board(Config.BEGINNER, SEED);
+
+    // Opens the middle, then every other safe cell 10 ms apart
+    private static MoveLog win() {
+        Board b = new Board(Config.BEGINNER, SEED);
+        MoveLog log = new MoveLog();
+        long at = 10;
+        b.reveal(4, 4);
+        log.add(4 * 9 + 4, MoveLog.REVEAL, at);
+        for (int i = 0; i < 81; i++) {
+            if (b.isMine(i) || b.isSeen(i)) continue;
+            b.reveal(i / 9, i % 9);
+            log.add(i, MoveLog.REVEAL, at += 10);
+        }
+        assertTrue(b.isCleared());
+        return log;
+    }
+
+    private static long total(byte[] log) {
+        long t = 0;
+        MoveLog.Reader moves = new MoveLog.Reader(log);
+        while (moves.next()) t += moves.delta;
+        return t;
+    }
+
+    private Verdict verify(byte[] log, long millis) {
+        board.reset(SEED);
+        return Verifier.verify(board, log, millis);
+    }
+
+    private static void varint(ByteArrayOutputStream out, long v) {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    @Test
+    void winningLogWithItsOwnTimeIsValid() {
+        byte[] log = win().toBytes();
+        assertEquals(Verdict.VALID, verify(log, total(log)));
+        assertEquals(Verdict.TIME_MISMATCH, verify(log, total(log) - 1));
+        assertEquals(Verdict.MISSING, verify(null, 0));
+    }
+
+    @Test
+    void logThatStopsShortOrHitsAMineIsNotWon() {
+        byte[] log = win().toBytes();
+        MoveLog first = new MoveLog();
+        first.add(4 * 9 + 4, MoveLog.REVEAL, 10);
+        assertEquals(Verdict.NOT_WON, verify(first.toBytes(), 10));
+
+        board.reset(SEED);
+        board.reveal(4, 4);
+        int mine = 0;
+        while (!board.isMine(mine)) mine++;
+        first.add(mine, MoveLog.REVEAL, 20);
+        assertEquals(Verdict.NOT_WON, verify(first.toBytes(), 20));
+        assertEquals(Verdict.VALID, verify(log, total(log)));
+    }
+
+    @Test
+    void movesAfterTheEndOrOffTheBoardAreMalformed() {
+        MoveLog log = win();
+        long t = total(log.toBytes());
+        log.add(0, MoveLog.FLAG, t);
+        assertEquals(Verdict.MALFORMED, verify(log.toBytes(), t));
+
+        MoveLog off = new MoveLog();
+        off.add(81, MoveLog.REVEAL, 10);
+        assertEquals(Verdict.MALFORMED, verify(off.toBytes(), 10));
+
+        // Action 3 is not a move
+        MoveLog odd = new MoveLog();
+        odd.add(4 * 9 + 4, 3, 10);
+        assertEquals(Verdict.MALFORMED, verify(odd.toBytes(), 10));
+
+        byte[] bytes = win().toBytes();
+        assertEquals(Verdict.MALFORMED, verify(Arrays.copyOf(bytes, bytes.length - 1), t));
+    }
+
+    @Test
+    void forgedTimesThatGoNegativeOrOverflowAreMalformed() {
+        // A full ten byte gap reads back as -1
+        ByteArrayOutputStream negative = new ByteArrayOutputStream();
+        varint(negative, (4 * 9 + 4) << 2);
+        varint(negative, -1);
+        assertEquals(Verdict.MALFORMED, verify(negative.toByteArray(), -1));
+
+        // Two moves with huge gaps, the second wraps the sum round
+        ByteArrayOutputStream wrap = new ByteArrayOutputStream();
+        varint(wrap, (4 * 9 + 4) << 2);
+        varint(wrap, Long.MAX_VALUE);
+        varint(wrap, MoveLog.FLAG);
+        varint(wrap, Long.MAX_VALUE);
+        assertEquals(Verdict.MALFORMED, verify(wrap.toByteArray(), Long.MAX_VALUE - 1));
+    }
+}
@@ -0,0 +1,97 @@
+package com.yifen9.jiraiboxsweeper.solver;
+
+import com.yifen9.jiraiboxsweeper.model.Board;
+import com.yifen9.jiraiboxsweeper.model.Config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SolverTest {
+    // A board laid out as drawn, '*' for a mine, after its first click. Boards
+    // only come from seeds, so this tries seeds until one places these mines.
+    private static Board board(int r, int c, String... layout) {
+        int mines = 0;
+        for (String row : layout) mines += (int) row.chars().filter(ch -> ch == '*').count();
+        Config config = new Config(layout.length, layout[0].length(), mines);
+        for (long seed = 0; seed < 100_000; seed++) {
+            Board board = new Board(config, seed);
+            board.reveal(r, c);
+            if (matches(board, layout)) return board;
+        }
+        throw new AssertionError("No seed places this layout");
+    }
+
+    private static boolean matches(Board board, String[] layout) {
+        for (int i = 0; i < board.getRows() * board.getCols(); i++)
+            if (board.isMine(i) != (layout[i / board.getCols()].charAt(i % board.getCols()) == '*')) return false;
+        return true;
+    }
+
+    // What the solver makes of each hidden cell of the top row
+    private static String topRow(Board board) {
+        Solver solver = new Solver(board);
+        solver.solve();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < board.getCols(); i++) {
+            assertFalse(board.isSeen(i));
+            sb.append(solver.isMine(i) ? '*' : solver.isSafe(i) ? 's' : '?');
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void oneTwoOneHasItsMinesUnderTheOnes() {
+        // The click opens the two bottom rows, which read 1 1 2 1 1
+        Board board = board(2, 2,
+                ".*.*.",
+                ".....",
+                ".....");
+        assertEquals("s*s*s", topRow(board));
+    }
+
+    @Test
+    void oneOneOnAnEdgeClearsTheThirdCell() {
+        // 1 1 1 1 under the hidden row: the edge pair holds one mine, so the
+        // third cell is safe, the fourth a mine and the rest follows
+        Board board = board(3, 1,
+                "*..*",
+                "....",
+                "....",
+                "....");
+        assertEquals("*ss*", topRow(board));
+    }
+
+    @Test
+    void fiftyFiftyStaysUndecided() {
+        Board board = board(2, 0,
+                "*.",
+                "..",
+                "..");
+        assertEquals("??", topRow(board));
+        Solver solver = new Solver(board);
+        solver.solve();
+        assertEquals(-1, solver.findSafe());
+    }
+
+    @Test
+    void deductionsHoldOnRealBoards() {
+        // Plays only proven cells, every verdict is checked against the mines
+        for (long seed = 0; seed < 50; seed++) {
+            Board board = new Board(Config.EXPERT, seed);
+            board.reveal(8, 15);
+            Solver solver = new Solver(board);
+            while (true) {
+                solver.solve();
+                for (int j = 0; j < 16 * 30; j++) {
+                    if (solver.isSafe(j)) assertFalse(board.isMine(j), "seed " + seed + " cell " + j);
+                    if (solver.isMine(j)) assertTrue(board.isMine(j), "seed " + seed + " cell " + j);
+                }
+                int i = solver.findSafe();
+                if (i < 0) break;
+                assertFalse(board.reveal(i / 30, i % 30));
+                solver.update(board.getChanges());
+            }
+        }
+    }
+}